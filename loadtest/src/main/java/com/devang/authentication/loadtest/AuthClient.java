@@ -0,0 +1,172 @@
+package com.devang.authentication.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal client for the auth service's REST API. Calls unwrap the ApiResponse envelope and throw
+ * {@link CallFailedException} for non-2xx responses or {@code success=false} bodies.
+ */
+final class AuthClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final HttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Responses that actually came back over HTTP/2, since h2c silently falls back to HTTP/1.1
+    private final LongAdder http2Responses = new LongAdder();
+
+    AuthClient(String baseUrl, int maxConcurrency, HttpClient.Version version) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(2, maxConcurrency / 4)))
+                .build();
+    }
+
+    JsonNode post(String path, String apiKey, Map<String, ?> body) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+            return send(request, apiKey, path);
+        } catch (IOException e) {
+            throw new CallFailedException(path, -1, e.getMessage());
+        }
+    }
+
+    JsonNode get(String path, String apiKey) {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET(), apiKey, path);
+    }
+
+    /**
+     * Posts an already encoded body with {@code mediaType} as both Content-Type and Accept and
+     * returns the response body undecoded, so encodings can be compared byte for byte.
+     */
+    byte[] exchange(String path, String mediaType, byte[] body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", mediaType)
+                .header("Accept", mediaType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new CallFailedException(path, -1, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallFailedException(path, -1, "interrupted");
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new CallFailedException(path, response.statusCode(), "");
+        }
+        return response.body();
+    }
+
+    long http2Responses() {
+        return http2Responses.sum();
+    }
+
+    /**
+     * True once the readiness probe answers 200.
+     */
+    boolean isReady() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/readiness"))
+                    .timeout(Duration.ofSeconds(2))
+                    .GET()
+                    .build();
+            return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Value of an actuator metric, or NaN when it is not exposed. The endpoint answers without the
+     * ApiResponse envelope, so it bypasses {@link #send}.
+     */
+    double metric(String name, String apiKey) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("apikey", apiKey)
+                    .GET()
+                    .build();
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                return Double.NaN;
+            }
+            return mapper.readTree(response.body()).path("measurements").path(0).path("value").asDouble(Double.NaN);
+        } catch (IOException e) {
+            return Double.NaN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.NaN;
+        }
+    }
+
+    private JsonNode send(HttpRequest.Builder request, String apiKey, String path) {
+        if (apiKey != null) {
+            request.header("apikey", apiKey);
+        }
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request.header("Accept", "application/json").build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new CallFailedException(path, -1, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallFailedException(path, -1, "interrupted");
+        }
+
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            http2Responses.increment();
+        }
+
+        JsonNode body;
+        try {
+            body = response.body().length == 0 ? mapper.nullNode() : mapper.readTree(response.body());
+        } catch (IOException e) {
+            throw new CallFailedException(path, response.statusCode(), "unparseable body");
+        }
+        if (response.statusCode() / 100 != 2 || !body.path("success").asBoolean(false)) {
+            String error = body.path("error").asText(body.path("message").asText(""));
+            throw new CallFailedException(path, response.statusCode(), error);
+        }
+        return body.path("data");
+    }
+
+    static final class CallFailedException extends RuntimeException {
+
+        private final int status;
+
+        CallFailedException(String path, int status, String error) {
+            super(path + " -> " + status + (error.isEmpty() ? "" : " (" + error + ")"), null, false, false);
+            this.status = status;
+        }
+
+        int status() {
+            return status;
+        }
+    }
+}
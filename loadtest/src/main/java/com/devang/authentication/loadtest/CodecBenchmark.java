@@ -0,0 +1,177 @@
+package com.devang.authentication.loadtest;
+
+import com.devang.authentication.loadtest.TenantSeeder.Tenant;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON and CBOR on {@code POST /api/auth/introspect/batch}: seeds users, signs each in
+ * once, then introspects all their access tokens in one batch per request. Prints the request and
+ * response sizes, the round trip latencies (requests alternate between the encodings so both see
+ * the same load), and what Jackson spends encoding and decoding the response envelope in each.
+ *
+ * <pre>
+ * mvn -f loadtest/pom.xml compile exec:java -Dexec.mainClass=com.devang.authentication.loadtest.CodecBenchmark \
+ *     -Dexec.args="appJar=../target/authentication-0.1.3.jar batchSize=100"
+ * </pre>
+ */
+public final class CodecBenchmark {
+
+    private static final String PATH = "/api/auth/introspect/batch";
+    private static final String JSON = "application/json";
+    private static final String CBOR = "application/cbor";
+
+    private CodecBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        // Target service; ignored when appJar is set
+        String baseUrl = take(values, "baseUrl", "http://localhost:8080");
+        // Application jar to start against an embedded PostgreSQL (empty = use baseUrl)
+        String appJar = take(values, "appJar", "");
+        // Tokens per batch; at most introspection.max-batch-size
+        int batchSize = Integer.parseInt(take(values, "batchSize", "100"));
+        // Measured round trips per encoding
+        int requests = Integer.parseInt(take(values, "requests", "2000"));
+        // Measured in-process encodes and decodes per encoding
+        int encodes = Integer.parseInt(take(values, "encodes", "20000"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings: " + values.keySet());
+        }
+        if (batchSize < 1 || requests < 1 || encodes < 1) {
+            throw new IllegalArgumentException("batchSize, requests and encodes must be positive");
+        }
+
+        LocalStack stack = appJar.isEmpty() ? null : LocalStack.start(appJar, "");
+        int status = 0;
+        try {
+            AuthClient client = new AuthClient(stack != null ? stack.baseUrl() : baseUrl, 8, HttpClient.Version.HTTP_1_1);
+            if (stack != null) {
+                stack.awaitReady(client);
+            } else if (!client.isReady()) {
+                throw new IllegalStateException("No ready service at " + baseUrl);
+            }
+            run(client, seedTokens(client, batchSize), requests, encodes);
+        } catch (Exception e) {
+            System.err.println("Codec benchmark aborted: " + e);
+            status = 2;
+        } finally {
+            if (stack != null) {
+                stack.close();
+            }
+        }
+        System.exit(status);
+    }
+
+    private static List<String> seedTokens(AuthClient client, int count) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Tenant tenant = new TenantSeeder(client, executor).seed(1, 1, count).get(0);
+            List<String> tokens = new ArrayList<>();
+            for (String username : tenant.usernames()) {
+                tokens.add(client.post("/api/auth/login", tenant.clientAppApiKeys().get(0), Map.of(
+                        "username", username,
+                        "password", TenantSeeder.PASSWORD)).path("accessToken").asText());
+            }
+            return tokens;
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void run(AuthClient client, List<String> tokens, int requests, int encodes) throws IOException {
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        Map<String, List<String>> body = Map.of("tokens", tokens);
+        byte[] jsonRequest = json.writeValueAsBytes(body);
+        byte[] cborRequest = cbor.writeValueAsBytes(body);
+
+        byte[] jsonResponse = client.exchange(PATH, JSON, jsonRequest);
+        byte[] cborResponse = client.exchange(PATH, CBOR, cborRequest);
+        JsonNode envelope = json.readTree(jsonResponse);
+        if (!envelope.path("success").asBoolean(false) || !cbor.readTree(cborResponse).path("success").asBoolean(false)) {
+            throw new IllegalStateException("Batch introspection failed: " + envelope);
+        }
+
+        // Unmeasured rounds first so both encodings run on warm code paths
+        LatencyHistogram jsonLatencies = new LatencyHistogram();
+        LatencyHistogram cborLatencies = new LatencyHistogram();
+        int warmup = Math.max(1, requests / 10);
+        for (int i = -warmup; i < requests; i++) {
+            long start = System.nanoTime();
+            client.exchange(PATH, JSON, jsonRequest);
+            long middle = System.nanoTime();
+            client.exchange(PATH, CBOR, cborRequest);
+            long end = System.nanoTime();
+            if (i >= 0) {
+                jsonLatencies.record((middle - start) / 1000);
+                cborLatencies.record((end - middle) / 1000);
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%nPOST %s with %d tokens, %d round trips per encoding%n", PATH, tokens.size(), requests);
+        System.out.printf(Locale.ROOT, "%-8s %11s %11s %9s %9s %9s %11s %11s%n",
+                "encoding", "request B", "response B", "mean ms", "p50 ms", "p99 ms", "encode us", "decode us");
+        printRow("json", jsonRequest, jsonResponse, jsonLatencies, json, envelope, encodes);
+        printRow("cbor", cborRequest, cborResponse, cborLatencies, cbor, envelope, encodes);
+    }
+
+    private static void printRow(String label, byte[] request, byte[] response, LatencyHistogram latencies,
+                                 ObjectMapper mapper, JsonNode envelope, int encodes) throws IOException {
+        double[] codec = codecMicros(mapper, envelope, response, encodes);
+        System.out.printf(Locale.ROOT, "%-8s %11d %11d %9.2f %9.2f %9.2f %11.2f %11.2f%n",
+                label, request.length, response.length,
+                latencies.mean() / 1000.0,
+                latencies.percentile(50) / 1000.0,
+                latencies.percentile(99) / 1000.0,
+                codec[0], codec[1]);
+    }
+
+    // Mean microseconds to encode the envelope and to decode the response, after as many warmup rounds
+    private static double[] codecMicros(ObjectMapper mapper, JsonNode envelope, byte[] response, int rounds) throws IOException {
+        long sink = 0;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        for (int i = -rounds; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += mapper.writeValueAsBytes(envelope).length;
+            long middle = System.nanoTime();
+            sink += mapper.readTree(response).size();
+            long end = System.nanoTime();
+            if (i >= 0) {
+                encodeNanos += middle - start;
+                decodeNanos += end - middle;
+            }
+        }
+        if (sink == 0) {
+            throw new IllegalStateException("Nothing was encoded");
+        }
+        return new double[]{encodeNanos / 1000.0 / rounds, decodeNanos / 1000.0 / rounds};
+    }
+
+    private static String take(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value != null ? value : defaultValue;
+    }
+}
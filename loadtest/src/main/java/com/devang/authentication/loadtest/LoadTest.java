@@ -0,0 +1,168 @@
+package com.devang.authentication.loadtest;
+
+import com.devang.authentication.loadtest.TenantSeeder.Tenant;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test entry point: seeds tenants, replays the operation mix from {@code threads} concurrent
+ * clients for the warmup and measurement windows, prints throughput and latency percentiles per
+ * operation, the bytes the service allocated per request, and exits with status 1 when a release gate is violated (2 when the run could not
+ * complete).
+ *
+ * <pre>
+ * mvn -f loadtest/pom.xml compile exec:java -Dexec.args="appJar=../target/authentication-0.1.3.jar threads=64"
+ * </pre>
+ */
+public final class LoadTest {
+
+    // Young generation allocations of the service JVM, advanced at every GC
+    private static final String ALLOCATED_METRIC = "jvm.gc.memory.allocated";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        LocalStack stack = config.appJar().isEmpty() ? null : LocalStack.start(config.appJar(), config.profiles());
+        int status;
+        try {
+            String baseUrl = stack != null ? stack.baseUrl() : config.baseUrl();
+            AuthClient client = new AuthClient(baseUrl, config.threads(), config.httpVersion().equals("2")
+                    ? HttpClient.Version.HTTP_2
+                    : HttpClient.Version.HTTP_1_1);
+            if (stack != null) {
+                stack.awaitReady(client);
+            } else if (!client.isReady()) {
+                throw new IllegalStateException("No ready service at " + baseUrl);
+            }
+            status = run(client, config);
+        } catch (Exception e) {
+            // Setup failures are not gate violations; report them with a distinct status
+            System.err.println("Load test aborted: " + e);
+            status = 2;
+        } finally {
+            if (stack != null) {
+                stack.close();
+            }
+        }
+        System.exit(status);
+    }
+
+    private static int run(AuthClient client, LoadTestConfig config) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(config.threads());
+        try {
+            long seedStart = System.nanoTime();
+            List<Tenant> tenants = new TenantSeeder(client, executor).seed(config);
+            System.out.printf(Locale.ROOT, "Seeded %d organizations, %d client apps and %d users in %.1fs%n",
+                    config.organizations(), config.organizations() * config.clientApps(),
+                    config.organizations() * config.users(), (System.nanoTime() - seedStart) / 1e9);
+
+            List<Worker> workers = new ArrayList<>();
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < config.threads(); i++) {
+                Worker worker = new Worker(client, tenants, config);
+                workers.add(worker);
+                running.add(executor.submit(worker));
+            }
+
+            Thread.sleep(config.warmup().toMillis());
+            String metricsKey = tenants.get(0).orgOwnerApiKey();
+            double allocatedBefore = client.metric(ALLOCATED_METRIC, metricsKey);
+            long measureStart = System.nanoTime();
+            workers.forEach(worker -> worker.startMeasuring(measureStart));
+            Thread.sleep(config.duration().toMillis());
+            long measureEnd = System.nanoTime();
+            workers.forEach(Worker::stop);
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            double allocated = client.metric(ALLOCATED_METRIC, metricsKey) - allocatedBefore;
+
+            if (config.httpVersion().equals("2")) {
+                System.out.printf(Locale.ROOT, "%d responses arrived over HTTP/2%n", client.http2Responses());
+            }
+            return report(config, workers, (measureEnd - measureStart) / 1e9, allocated);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static int report(LoadTestConfig config, List<Worker> workers, double seconds, double allocatedBytes) {
+        LatencyHistogram overall = new LatencyHistogram();
+        long overallErrors = 0;
+
+        System.out.printf(Locale.ROOT, "%nMeasured %.1fs with %d clients over HTTP/%s%n", seconds, config.threads(), config.httpVersion());
+        System.out.printf(Locale.ROOT, "%-10s %10s %8s %10s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram latencies = new LatencyHistogram();
+            long errors = 0;
+            String lastError = null;
+            for (Worker worker : workers) {
+                latencies.add(worker.latencies(operation));
+                errors += worker.errors(operation);
+                if (worker.lastError(operation) != null) {
+                    lastError = worker.lastError(operation);
+                }
+            }
+            if (latencies.count() == 0 && errors == 0) {
+                continue;
+            }
+            printRow(operation.key(), latencies, errors, seconds);
+            if (lastError != null) {
+                System.out.println("           last error: " + lastError);
+            }
+            overall.add(latencies);
+            overallErrors += errors;
+        }
+        printRow("total", overall, overallErrors, seconds);
+        long attempts = overall.count() + overallErrors;
+        if (!Double.isNaN(allocatedBytes) && attempts > 0) {
+            // Includes the background work of the window, so compare runs with the same mix
+            System.out.printf(Locale.ROOT, "%nService allocated %.1f MB, %.1f KB per request%n",
+                    allocatedBytes / (1024 * 1024), allocatedBytes / 1024 / attempts);
+        }
+
+        // Release gates
+        List<String> violations = new ArrayList<>();
+        double errorRate = attempts == 0 ? 1.0 : (double) overallErrors / attempts;
+        double throughput = overall.count() / seconds;
+        double p99Millis = overall.percentile(99) / 1000.0;
+        if (errorRate > config.maxErrorRate()) {
+            violations.add(String.format(Locale.ROOT, "error rate %.4f > %.4f", errorRate, config.maxErrorRate()));
+        }
+        if (config.minThroughput() > 0 && throughput < config.minThroughput()) {
+            violations.add(String.format(Locale.ROOT, "throughput %.1f ops/s < %.1f", throughput, config.minThroughput()));
+        }
+        if (config.maxP99Millis() > 0 && p99Millis > config.maxP99Millis()) {
+            violations.add(String.format(Locale.ROOT, "p99 %.2f ms > %d ms", p99Millis, config.maxP99Millis()));
+        }
+
+        if (violations.isEmpty()) {
+            System.out.println("\nPASSED");
+            return 0;
+        }
+        System.out.println("\nFAILED: " + String.join("; ", violations));
+        return 1;
+    }
+
+    private static void printRow(String label, LatencyHistogram latencies, long errors, double seconds) {
+        System.out.printf(Locale.ROOT, "%-10s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                label, latencies.count(), errors, latencies.count() / seconds,
+                latencies.mean() / 1000.0,
+                latencies.percentile(50) / 1000.0,
+                latencies.percentile(90) / 1000.0,
+                latencies.percentile(99) / 1000.0,
+                latencies.percentile(99.9) / 1000.0,
+                latencies.max() / 1000.0);
+    }
+}
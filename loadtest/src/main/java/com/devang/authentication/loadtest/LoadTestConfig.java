@@ -0,0 +1,104 @@
+package com.devang.authentication.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, passed as {@code key=value} arguments. Unknown keys are rejected so a typo
+ * never silently runs the defaults.
+ */
+record LoadTestConfig(
+        // Target service; ignored when appJar is set
+        String baseUrl,
+        // Application jar to start against an embedded PostgreSQL (empty = use baseUrl)
+        String appJar,
+        // Extra Spring profiles for the started application, comma separated (e.g. http2)
+        String profiles,
+        // Client protocol: 1.1, or 2 for HTTP/2 (h2c upgrade on plain http)
+        String httpVersion,
+        // Tenants to seed
+        int organizations,
+        // Client apps per organization
+        int clientApps,
+        // Users per organization, signed up through the first client app
+        int users,
+        // Concurrent simulated clients
+        int threads,
+        // Measured run length after warmup
+        Duration duration,
+        // Unmeasured run length before the measurement starts
+        Duration warmup,
+        // Relative weight of each operation
+        Map<Operation, Integer> mix,
+        // Release gates; a run violating one exits with status 1 (0 = no gate)
+        double maxErrorRate,
+        double minThroughput,
+        long maxP99Millis) {
+
+    private static final String DEFAULT_MIX = "login:15,refresh:25,validate:45,sso:10,logout:5";
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        LoadTestConfig config = new LoadTestConfig(
+                take(values, "baseUrl", "http://localhost:8080"),
+                take(values, "appJar", ""),
+                take(values, "profiles", ""),
+                take(values, "httpVersion", "1.1"),
+                Integer.parseInt(take(values, "organizations", "5")),
+                Integer.parseInt(take(values, "clientApps", "3")),
+                Integer.parseInt(take(values, "users", "50")),
+                Integer.parseInt(take(values, "threads", "32")),
+                Duration.ofSeconds(Long.parseLong(take(values, "durationSeconds", "60"))),
+                Duration.ofSeconds(Long.parseLong(take(values, "warmupSeconds", "10"))),
+                parseMix(take(values, "mix", DEFAULT_MIX)),
+                Double.parseDouble(take(values, "maxErrorRate", "0.01")),
+                Double.parseDouble(take(values, "minThroughput", "0")),
+                Long.parseLong(take(values, "maxP99Millis", "0")));
+
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings: " + values.keySet());
+        }
+        if (config.organizations < 1 || config.clientApps < 1 || config.users < 1 || config.threads < 1) {
+            throw new IllegalArgumentException("organizations, clientApps, users and threads must be positive");
+        }
+        if (!config.httpVersion.equals("1.1") && !config.httpVersion.equals("2")) {
+            throw new IllegalArgumentException("httpVersion must be 1.1 or 2");
+        }
+        return config;
+    }
+
+    private static String take(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value != null ? value : defaultValue;
+    }
+
+    // Format: login:15,refresh:25,... (operations left out get weight 0)
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight in mix entry: " + part);
+            }
+            mix.put(Operation.fromKey(pair[0].trim()), weight);
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Operation mix is empty");
+        }
+        return mix;
+    }
+}
@@ -0,0 +1,110 @@
+package com.devang.authentication.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the service fully locally: an embedded PostgreSQL (real Postgres binaries unpacked from a
+ * Maven artifact, no container) plus the application jar as a child process with the
+ * {@code dev,loadtest} profiles plus any extra ones requested. The native upserts the service relies on need real Postgres, which
+ * is why an in-memory database is not an option here.
+ */
+final class LocalStack implements AutoCloseable {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(3);
+
+    private final EmbeddedPostgres database;
+    private final Process application;
+    private final String baseUrl;
+
+    private LocalStack(EmbeddedPostgres database, Process application, String baseUrl) {
+        this.database = database;
+        this.application = application;
+        this.baseUrl = baseUrl;
+    }
+
+    static LocalStack start(String appJar, String extraProfiles) throws IOException, InterruptedException {
+        return start(appJar, extraProfiles, Map.of());
+    }
+
+    // extraEnv overrides application settings through their environment variables
+    static LocalStack start(String appJar, String extraProfiles, Map<String, String> extraEnv)
+            throws IOException, InterruptedException {
+        File jar = new File(appJar);
+        if (!jar.isFile()) {
+            throw new IllegalArgumentException("Application jar not found: " + jar.getAbsolutePath()
+                    + " (run mvn package in the project root first)");
+        }
+
+        EmbeddedPostgres database = EmbeddedPostgres.builder().start();
+        int port = freePort();
+        File logFile = new File("target", "app.log");
+        logFile.getParentFile().mkdirs();
+
+        ProcessBuilder builder = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(), "-jar", jar.getAbsolutePath())
+                .redirectErrorStream(true)
+                .redirectOutput(logFile);
+        Map<String, String> env = builder.environment();
+        env.put("SPRING_PROFILES_ACTIVE", extraProfiles.isEmpty() ? "dev,loadtest" : "dev,loadtest," + extraProfiles);
+        env.put("SERVER_PORT", String.valueOf(port));
+        env.put("DATABASE_URL", database.getJdbcUrl("postgres", "postgres"));
+        env.put("DATABASE_USERNAME", "postgres");
+        env.put("DATABASE_PASSWORD", "postgres");
+        env.putAll(extraEnv);
+
+        Process application;
+        try {
+            application = builder.start();
+        } catch (IOException e) {
+            database.close();
+            throw e;
+        }
+        LocalStack stack = new LocalStack(database, application, "http://localhost:" + port);
+        System.out.println("Started embedded PostgreSQL on port " + database.getPort()
+                + " and the application on port " + port + " (log: " + logFile.getPath() + ")");
+        return stack;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Blocks until the readiness probe reports UP, failing fast if the application process exits.
+     */
+    void awaitReady(AuthClient client) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (!client.isReady()) {
+            if (!application.isAlive()) {
+                throw new IllegalStateException("Application exited with status " + application.exitValue()
+                        + "; see target/app.log");
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Application not ready after " + STARTUP_TIMEOUT.toSeconds() + "s");
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        application.destroy();
+        if (!application.waitFor(30, TimeUnit.SECONDS)) {
+            application.destroyForcibly();
+        }
+        database.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
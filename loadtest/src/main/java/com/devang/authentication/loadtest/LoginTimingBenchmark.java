@@ -0,0 +1,146 @@
+package com.devang.authentication.loadtest;
+
+import com.devang.authentication.loadtest.AuthClient.CallFailedException;
+import com.devang.authentication.loadtest.TenantSeeder.Tenant;
+
+import java.net.http.HttpClient;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that a failed login takes as long for a username that does not exist as for a wrong
+ * password, so response times do not reveal which usernames are registered. Alternates the two
+ * kinds of login from one client and compares their latencies; the run fails when the medians
+ * differ by more than maxDifference. Login throttling would answer most of these failures before
+ * any hashing, so the local stack runs with it disabled, and a baseUrl target must have it off too.
+ *
+ * <pre>
+ * mvn -f loadtest/pom.xml compile exec:java -Dexec.mainClass=com.devang.authentication.loadtest.LoginTimingBenchmark \
+ *     -Dexec.args="appJar=../target/authentication-0.1.3.jar samples=400"
+ * </pre>
+ */
+public final class LoginTimingBenchmark {
+
+    private static final String WRONG_PASSWORD = "Wrong#Passw0rd";
+
+    private LoginTimingBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        // Target service; ignored when appJar is set
+        String baseUrl = take(values, "baseUrl", "http://localhost:8080");
+        // Application jar to start against an embedded PostgreSQL (empty = use baseUrl)
+        String appJar = take(values, "appJar", "");
+        // Measured logins of each kind
+        int samples = Integer.parseInt(take(values, "samples", "400"));
+        // Largest accepted relative difference between the two medians
+        double maxDifference = Double.parseDouble(take(values, "maxDifference", "0.2"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown settings: " + values.keySet());
+        }
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be positive");
+        }
+
+        LocalStack stack = appJar.isEmpty() ? null
+                : LocalStack.start(appJar, "", Map.of("LOGIN_THROTTLE_ENABLED", "false"));
+        int status = 0;
+        try {
+            AuthClient client = new AuthClient(stack != null ? stack.baseUrl() : baseUrl, 1, HttpClient.Version.HTTP_1_1);
+            if (stack != null) {
+                stack.awaitReady(client);
+            } else if (!client.isReady()) {
+                throw new IllegalStateException("No ready service at " + baseUrl);
+            }
+            if (!run(client, seed(client), samples, maxDifference)) {
+                status = 1;
+            }
+        } catch (Exception e) {
+            System.err.println("Login timing benchmark aborted: " + e);
+            status = 2;
+        } finally {
+            if (stack != null) {
+                stack.close();
+            }
+        }
+        System.exit(status);
+    }
+
+    private static Tenant seed(AuthClient client) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            return new TenantSeeder(client, executor).seed(1, 1, 1).get(0);
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static boolean run(AuthClient client, Tenant tenant, int samples, double maxDifference) {
+        String apiKey = tenant.clientAppApiKeys().get(0);
+        String known = tenant.usernames().get(0);
+
+        // Unmeasured rounds first so both paths run on warm code; interleaved so drift in machine
+        // load hits both series alike
+        LatencyHistogram wrongPassword = new LatencyHistogram();
+        LatencyHistogram unknownUser = new LatencyHistogram();
+        int warmup = Math.max(1, samples / 10);
+        for (int i = -warmup; i < samples; i++) {
+            long start = System.nanoTime();
+            failLogin(client, apiKey, known);
+            long middle = System.nanoTime();
+            failLogin(client, apiKey, "missing-" + i);
+            long end = System.nanoTime();
+            if (i >= 0) {
+                wrongPassword.record((middle - start) / 1000);
+                unknownUser.record((end - middle) / 1000);
+            }
+        }
+
+        double knownMedian = wrongPassword.percentile(50);
+        double unknownMedian = unknownUser.percentile(50);
+        double difference = Math.abs(unknownMedian - knownMedian) / knownMedian;
+        System.out.printf(Locale.ROOT, "%nPOST /api/auth/login, %d failed logins of each kind%n", samples);
+        System.out.printf(Locale.ROOT, "%-16s %9s %9s %9s%n", "login", "mean ms", "p50 ms", "p99 ms");
+        printRow("wrong password", wrongPassword);
+        printRow("unknown user", unknownUser);
+        System.out.printf(Locale.ROOT, "Medians differ by %.1f%% (limit %.1f%%)%n", difference * 100, maxDifference * 100);
+        return difference <= maxDifference;
+    }
+
+    private static void failLogin(AuthClient client, String apiKey, String username) {
+        try {
+            client.post("/api/auth/login", apiKey, Map.of("username", username, "password", WRONG_PASSWORD));
+        } catch (CallFailedException e) {
+            if (e.status() != 401) {
+                throw e;
+            }
+            return;
+        }
+        throw new IllegalStateException("Login with a wrong password succeeded for " + username);
+    }
+
+    private static void printRow(String label, LatencyHistogram latencies) {
+        System.out.printf(Locale.ROOT, "%-16s %9.2f %9.2f %9.2f%n", label,
+                latencies.mean() / 1000.0,
+                latencies.percentile(50) / 1000.0,
+                latencies.percentile(99) / 1000.0);
+    }
+
+    private static String take(Map<String, String> values, String key, String defaultValue) {
+        String value = values.remove(key);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,50 @@
+package com.devang.authentication.loadtest;
+
+/**
+ * Operations replayed by the load test.
+ */
+enum Operation {
+    // POST /api/auth/login with the client app key
+    LOGIN("login", false),
+    // POST /api/auth/refresh, rotating the session's refresh token
+    REFRESH("refresh"),
+    // POST /api/auth/introspect of the current access token
+    VALIDATE("validate"),
+    // POST /api/auth/sso-exchange into another client app of the same organization
+    SSO_EXCHANGE("sso"),
+    // POST /api/auth/logout; the next operation of the session logs in again
+    LOGOUT("logout"),
+    // POST /api/auth/login with a wrong password, as in a credential stuffing run; any 4xx rejection
+    // counts as success. Failures trip the login throttle, which then also rejects regular logins.
+    BAD_LOGIN("badlogin", false);
+
+    private final String key;
+    private final boolean needsSession;
+
+    Operation(String key) {
+        this(key, true);
+    }
+
+    Operation(String key, boolean needsSession) {
+        this.key = key;
+        this.needsSession = needsSession;
+    }
+
+    String key() {
+        return key;
+    }
+
+    // Operations run on a logged in session; the worker logs in first when it has none
+    boolean needsSession() {
+        return needsSession;
+    }
+
+    static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equalsIgnoreCase(key)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + key);
+    }
+}
@@ -0,0 +1,91 @@
+package com.devang.authentication.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Seeds organizations, client apps and users through the public endpoints, exactly as real tenants
+ * would be created. Names carry a run id so repeated runs against the same database never collide.
+ */
+final class TenantSeeder {
+
+    static final String PASSWORD = "LoadTest#Passw0rd";
+
+    record Tenant(UUID organizationId, String orgOwnerApiKey, List<String> clientAppApiKeys, List<String> usernames) {
+    }
+
+    private final AuthClient client;
+    private final ExecutorService executor;
+    private final String runId = UUID.randomUUID().toString().substring(0, 8);
+
+    TenantSeeder(AuthClient client, ExecutorService executor) {
+        this.client = client;
+        this.executor = executor;
+    }
+
+    List<Tenant> seed(LoadTestConfig config) throws InterruptedException, ExecutionException {
+        return seed(config.organizations(), config.clientApps(), config.users());
+    }
+
+    List<Tenant> seed(int organizationCount, int clientApps, int users) throws InterruptedException, ExecutionException {
+        // Organizations and their apps first, then every user signup as one flat batch of tasks so
+        // no task ever waits on another task queued behind it
+        List<Future<Tenant>> organizations = new ArrayList<>();
+        for (int i = 0; i < organizationCount; i++) {
+            int index = i;
+            organizations.add(executor.submit(() -> seedOrganization(index, clientApps, users)));
+        }
+        List<Tenant> tenants = new ArrayList<>();
+        for (Future<Tenant> tenant : organizations) {
+            tenants.add(tenant.get());
+        }
+
+        List<Future<?>> signups = new ArrayList<>();
+        for (Tenant tenant : tenants) {
+            for (String username : tenant.usernames()) {
+                signups.add(executor.submit(() -> client.post("/api/auth/signup", tenant.clientAppApiKeys().get(0), Map.of(
+                        "username", username,
+                        "password", PASSWORD,
+                        "email", username + "@loadtest.local"))));
+            }
+        }
+        for (Future<?> signup : signups) {
+            signup.get();
+        }
+        return tenants;
+    }
+
+    private Tenant seedOrganization(int index, int clientApps, int users) {
+        String prefix = "lt-" + runId + "-" + index;
+
+        JsonNode owner = client.post("/api/auth/signup", null, Map.of(
+                "username", prefix + "-owner",
+                "password", PASSWORD,
+                "email", prefix + "-owner@loadtest.local",
+                "organizationName", "Load test " + prefix));
+        String orgOwnerApiKey = owner.path("orgOwnerApiKey").asText();
+        UUID organizationId = UUID.fromString(client.get("/api/organization/me", orgOwnerApiKey).path("id").asText());
+
+        List<String> clientAppApiKeys = new ArrayList<>();
+        for (int a = 0; a < clientApps; a++) {
+            JsonNode app = client.post("/api/organization/" + organizationId + "/client-apps", orgOwnerApiKey, Map.of(
+                    "name", prefix + "-app-" + a,
+                    "description", "Load test client app"));
+            clientAppApiKeys.add(app.path("clientAppApiKey").asText());
+        }
+
+        // Users sign up through the first app; SSO exchanges provision them into the others
+        List<String> usernames = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            usernames.add(prefix + "-user-" + u);
+        }
+        return new Tenant(organizationId, orgOwnerApiKey, clientAppApiKeys, usernames);
+    }
+}
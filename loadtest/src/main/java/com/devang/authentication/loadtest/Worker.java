@@ -0,0 +1,167 @@
+package com.devang.authentication.loadtest;
+
+import com.devang.authentication.loadtest.AuthClient.CallFailedException;
+import com.devang.authentication.loadtest.TenantSeeder.Tenant;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated client. It signs in as a random seeded user and keeps replaying operations drawn
+ * from the configured mix against that session until stopped; after a logout or a failed call it
+ * starts over as another random user, which spreads the load across all tenants.
+ */
+final class Worker implements Runnable {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final AuthClient client;
+    private final List<Tenant> tenants;
+    private final int[] cumulativeWeights = new int[OPERATIONS.length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final long[] errors = new long[OPERATIONS.length];
+    private final String[] lastErrors = new String[OPERATIONS.length];
+
+    private volatile long measureFrom = Long.MAX_VALUE;
+    private volatile boolean stopped;
+
+    private Tenant tenant;
+    private String username;
+    private int clientApp;
+    private String accessToken;
+    private String refreshToken;
+
+    Worker(AuthClient client, List<Tenant> tenants, LoadTestConfig config) {
+        this.client = client;
+        this.tenants = tenants;
+        int total = 0;
+        for (Operation operation : OPERATIONS) {
+            int weight = config.mix().getOrDefault(operation, 0);
+            // Exchanging needs a second client app to exchange into
+            if (operation == Operation.SSO_EXCHANGE && config.clientApps() < 2) {
+                weight = 0;
+            }
+            total += weight;
+            cumulativeWeights[operation.ordinal()] = total;
+            latencies[operation.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    void startMeasuring(long nanoTime) {
+        measureFrom = nanoTime;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    LatencyHistogram latencies(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    long errors(Operation operation) {
+        return errors[operation.ordinal()];
+    }
+
+    String lastError(Operation operation) {
+        return lastErrors[operation.ordinal()];
+    }
+
+    @Override
+    public void run() {
+        switchUser();
+        while (!stopped) {
+            Operation operation = next();
+            if (operation.needsSession() && refreshToken == null) {
+                operation = Operation.LOGIN;
+            }
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                execute(operation);
+                ok = true;
+            } catch (CallFailedException e) {
+                ok = false;
+                lastErrors[operation.ordinal()] = e.getMessage();
+                switchUser();
+            }
+            long end = System.nanoTime();
+            if (start >= measureFrom && !stopped) {
+                if (ok) {
+                    latencies[operation.ordinal()].record((end - start) / 1000);
+                } else {
+                    errors[operation.ordinal()]++;
+                }
+            }
+        }
+    }
+
+    private Operation next() {
+        int total = cumulativeWeights[cumulativeWeights.length - 1];
+        int pick = ThreadLocalRandom.current().nextInt(total);
+        for (Operation operation : OPERATIONS) {
+            if (pick < cumulativeWeights[operation.ordinal()]) {
+                return operation;
+            }
+        }
+        return Operation.LOGIN;
+    }
+
+    private void execute(Operation operation) {
+        switch (operation) {
+            case LOGIN -> updateTokens(client.post("/api/auth/login", tenant.clientAppApiKeys().get(clientApp), Map.of(
+                    "username", username,
+                    "password", TenantSeeder.PASSWORD)));
+            case REFRESH -> updateTokens(client.post("/api/auth/refresh", null, Map.of(
+                    "refreshToken", refreshToken)));
+            case VALIDATE -> {
+                JsonNode result = client.post("/api/auth/introspect", tenant.clientAppApiKeys().get(clientApp), Map.of(
+                        "token", accessToken));
+                if (!result.path("active").asBoolean(false)) {
+                    throw new CallFailedException("/api/auth/introspect", 200, result.path("error").asText("inactive"));
+                }
+            }
+            case SSO_EXCHANGE -> {
+                int apps = tenant.clientAppApiKeys().size();
+                int target = (clientApp + 1 + ThreadLocalRandom.current().nextInt(apps - 1)) % apps;
+                updateTokens(client.post("/api/auth/sso-exchange", null, Map.of(
+                        "currentAccessToken", accessToken,
+                        "targetClientAppApiKey", tenant.clientAppApiKeys().get(target))));
+                clientApp = target;
+            }
+            case LOGOUT -> {
+                client.post("/api/auth/logout", null, Map.of("refreshToken", refreshToken));
+                switchUser();
+            }
+            case BAD_LOGIN -> {
+                try {
+                    client.post("/api/auth/login", tenant.clientAppApiKeys().get(clientApp), Map.of(
+                            "username", username,
+                            "password", "not-" + TenantSeeder.PASSWORD));
+                } catch (CallFailedException e) {
+                    if (e.status() / 100 == 4) {
+                        return;
+                    }
+                    throw e;
+                }
+                throw new CallFailedException("/api/auth/login", 200, "wrong password accepted");
+            }
+        }
+    }
+
+    private void updateTokens(JsonNode auth) {
+        accessToken = auth.path("accessToken").asText();
+        refreshToken = auth.path("refreshToken").asText();
+    }
+
+    private void switchUser() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        tenant = tenants.get(random.nextInt(tenants.size()));
+        username = tenant.usernames().get(random.nextInt(tenant.usernames().size()));
+        clientApp = 0;
+        accessToken = null;
+        refreshToken = null;
+    }
+}
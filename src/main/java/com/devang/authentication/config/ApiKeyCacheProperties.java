@@ -0,0 +1,21 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "api-key-cache")
+@Data
+public class ApiKeyCacheProperties {
+
+    // How long a resolved API key is trusted before it is looked up again (ms)
+    private long ttl = 60000;
+
+    // Maximum number of cached API keys
+    private int maxSize = 10000;
+
+    // How often deletions made on other instances are checked for (ms); bounds how long another
+    // instance keeps accepting a key after it was disabled
+    private long revocationPollInterval = 1000;
+}
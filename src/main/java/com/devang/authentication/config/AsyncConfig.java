@@ -0,0 +1,37 @@
+package com.devang.authentication.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync(proxyTargetClass = true)
+public class AsyncConfig {
+
+    @Autowired
+    private ProvisioningProperties provisioningProperties;
+
+    @Bean
+    public ThreadPoolTaskExecutor provisioningExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(provisioningProperties.getPoolSize());
+        executor.setMaxPoolSize(provisioningProperties.getPoolSize());
+        executor.setQueueCapacity(provisioningProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("provisioning-");
+        executor.initialize();
+        return executor;
+    }
+
+    // Deletion jobs are rare and long running, so they run one at a time
+    @Bean
+    public ThreadPoolTaskExecutor deletionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setThreadNamePrefix("deletion-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,39 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "auth-events")
+@Data
+public class AuthEventProperties {
+
+    public enum DropPolicy {
+        // Reject the event being published
+        DROP_NEWEST,
+        // Evict the oldest buffered event to make room
+        DROP_OLDEST
+    }
+
+    // Record authentication events at all
+    private boolean enabled = true;
+
+    // Events buffered between the request path and the writer; rounded up to a power of two
+    private int bufferSize = 8192;
+
+    // What to do when the buffer is full
+    private DropPolicy dropPolicy = DropPolicy.DROP_NEWEST;
+
+    // Events inserted per batch
+    private int batchSize = 500;
+
+    // Milliseconds the writer sleeps when the buffer is empty
+    private long flushInterval = 1000;
+
+    // Days events are kept; 0 keeps them forever
+    private int retentionDays = 30;
+
+    // Upper bound for the limit parameter of the events query
+    private int maxQueryLimit = 500;
+}
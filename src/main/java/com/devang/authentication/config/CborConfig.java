@@ -0,0 +1,18 @@
+package com.devang.authentication.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+/**
+ * Registers a CBOR message converter next to the JSON one, so machine-to-machine callers can send
+ * {@code Accept: application/cbor} to the validate/introspect endpoints and skip JSON text encoding.
+ */
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter();
+    }
+}
@@ -0,0 +1,24 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "deletion")
+@Data
+public class DeletionProperties {
+
+    // Rows removed per transaction by organization and client app deletion jobs
+    private int batchSize = 1000;
+
+    // How long a claimed job stays with its instance without progress before others may take it over (ms)
+    private long leaseDuration = 300000;
+
+    // How often each instance looks for unclaimed, interrupted or due failed jobs (ms)
+    private long pollInterval = 30000;
+
+    // Retry backoff of failed jobs: base * 2^(attempts - 1), capped (ms)
+    private long retryBaseDelay = 60000;
+    private long retryMaxDelay = 3600000;
+}
@@ -0,0 +1,20 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "hashing")
+@Data
+public class HashingProperties {
+
+    // Threads dedicated to BCrypt (0 = number of available processors)
+    private int poolSize = 0;
+
+    // Hash jobs allowed to wait for a thread before new ones are rejected
+    private int queueCapacity = 256;
+
+    // Longest a request thread waits for its hash result (ms)
+    private long timeout = 5000;
+}
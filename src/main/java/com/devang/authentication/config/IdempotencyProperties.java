@@ -0,0 +1,21 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "idempotency")
+@Data
+public class IdempotencyProperties {
+
+    // How long retries carrying the same Idempotency-Key are told what the first attempt created (ms)
+    private long ttl = 86400000;
+
+    // Maximum number of outcomes kept in memory; older ones are still read from the database
+    private int cacheMaxSize = 10000;
+
+    // Key of the request body and caller API key hashes stored with each outcome; kept apart from
+    // the JWT secret so rotating that does not break retries. Changing it does
+    private String fingerprintSecret;
+}
@@ -0,0 +1,17 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "introspection")
+@Data
+public class IntrospectionProperties {
+
+    // Maximum number of tokens accepted by one batch introspection call
+    private int maxBatchSize = 100;
+
+    // Batches at least this large verify signatures in parallel
+    private int parallelThreshold = 16;
+}
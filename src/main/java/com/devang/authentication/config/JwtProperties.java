@@ -12,4 +12,27 @@ public class JwtProperties {
     private String secret;
     private long accessTokenExpiration;
     private long refreshTokenExpiration;
-}
\ No newline at end of file
+
+    // Claim naming used for newly issued access tokens
+    private ClaimProfile claimProfile = ClaimProfile.STANDARD;
+
+    // Upper bound on the encoded access token length in bytes (0 disables the check)
+    private int maxAccessTokenSize = 0;
+
+    // Optional properties file watched for secret/expiration changes
+    private String reloadFile;
+
+    // How often the reload file is checked (ms)
+    private long reloadInterval = 30000;
+
+    // How long each replaced secret still verifies tokens after a rotation (ms). Matches the refresh
+    // token lifetime so introspection keeps accepting refresh tokens that /refresh still honours
+    private long keyGracePeriod = 604800000;
+
+    public enum ClaimProfile {
+        // Descriptive claim names, user_metadata always embedded
+        STANDARD,
+        // Short claim names, user_metadata only for client apps that opt in
+        COMPACT
+    }
+}
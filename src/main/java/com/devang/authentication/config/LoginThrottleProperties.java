@@ -0,0 +1,38 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "login-throttle")
+@Data
+public class LoginThrottleProperties {
+
+    private boolean enabled = true;
+
+    // Sliding window over which failures are counted (ms)
+    private long window = 900000;
+
+    // Number of time buckets the window is split into
+    private int buckets = 15;
+
+    // Counters per sketch row (rounded up to a power of two) and number of rows
+    private int sketchWidth = 16384;
+    private int sketchDepth = 4;
+
+    // Keys (usernames, and separately IPs) whose failures are counted exactly; the sketch only pre-filters
+    private int trackedKeys = 100000;
+
+    // Failures per username (per client app) before delays / lockout kick in
+    private int usernameDelayThreshold = 5;
+    private int usernameLockoutThreshold = 20;
+
+    // Failures per client IP before delays / lockout kick in
+    private int ipDelayThreshold = 20;
+    private int ipLockoutThreshold = 100;
+
+    // Progressive delay: base * 2^(failures over threshold), capped (ms)
+    private long baseDelay = 250;
+    private long maxDelay = 2000;
+}
@@ -0,0 +1,20 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "lookup-store")
+@Data
+public class LookupStoreProperties {
+
+    // How API keys and client app memberships are looked up: straight from the database, or
+    // through in-process indexes filled from it
+    private Type type = Type.JPA;
+
+    public enum Type {
+        JPA,
+        MEMORY
+    }
+}
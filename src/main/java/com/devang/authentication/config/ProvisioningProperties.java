@@ -0,0 +1,20 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "provisioning")
+@Data
+public class ProvisioningProperties {
+
+    // Usernames copied per INSERT when backfilling a client app
+    private int batchSize = 500;
+
+    // Background threads running eager provisioning and backfills
+    private int poolSize = 2;
+
+    // Provisioning jobs allowed to wait for a thread
+    private int queueCapacity = 1000;
+}
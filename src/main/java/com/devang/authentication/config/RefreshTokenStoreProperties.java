@@ -0,0 +1,38 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "refresh-token-store")
+@Data
+public class RefreshTokenStoreProperties {
+
+    // Where refresh tokens live: the refresh_tokens table, process memory, or process memory backed by a log
+    private Type type = Type.JPA;
+
+    // File the in-memory store snapshots to and restores from on startup (empty = no persistence)
+    private String snapshotFile = "";
+
+    // Milliseconds between snapshots; expired tokens are dropped at the same time
+    private long snapshotInterval = 60000;
+
+    // Directory of the append-only log segments used by the log store
+    private String logDir = "data/refresh-tokens";
+
+    // Bytes mapped per log segment
+    private int logSegmentSize = 64 * 1024 * 1024;
+
+    // Milliseconds between forcing the mapped log to disk; bounds what a machine crash can lose
+    private long logSyncInterval = 1000;
+
+    // Milliseconds between log compactions
+    private long compactionInterval = 600000;
+
+    public enum Type {
+        JPA,
+        MEMORY,
+        LOG
+    }
+}
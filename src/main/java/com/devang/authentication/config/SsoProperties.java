@@ -0,0 +1,14 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "sso")
+@Data
+public class SsoProperties {
+
+    // Maximum number of cached (user, target client app) -> target user mappings
+    private int mappingCacheMaxSize = 100000;
+}
@@ -0,0 +1,17 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "stats")
+@Data
+public class StatsProperties {
+
+    // Milliseconds between flushes of the in-memory counter buffer
+    private long flushInterval = 5000;
+
+    // Milliseconds between recounts that correct drift, e.g. sessions that simply expired
+    private long reconcileInterval = 600000;
+}
@@ -0,0 +1,17 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "userinfo")
+@Data
+public class UserInfoProperties {
+
+    // How long a cached profile is served before it is reloaded (ms)
+    private long cacheTtl = 60000;
+
+    // Maximum number of cached profiles
+    private int cacheMaxSize = 10000;
+}
@@ -0,0 +1,17 @@
+package com.devang.authentication.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "warmup")
+@Data
+public class WarmupProperties {
+
+    // Run the JIT warmup before the readiness probe reports ACCEPTING_TRAFFIC
+    private boolean enabled = false;
+
+    // How long to keep exercising the hot paths (ms)
+    private long duration = 10000;
+}
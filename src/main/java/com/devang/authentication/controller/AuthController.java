@@ -1,20 +1,46 @@
 package com.devang.authentication.controller;
 
+import com.devang.authentication.dto.request.BatchIntrospectRequest;
+import com.devang.authentication.dto.request.IntrospectRequest;
 import com.devang.authentication.dto.request.LoginRequest;
 import com.devang.authentication.dto.request.RefreshTokenRequest;
 import com.devang.authentication.dto.request.SignupRequest;
 import com.devang.authentication.dto.request.SsoTokenRequest;
 import com.devang.authentication.dto.response.ApiResponse;
 import com.devang.authentication.dto.response.AuthResponse;
+import com.devang.authentication.dto.response.DeletionJobResponse;
+import com.devang.authentication.dto.response.SessionResponse;
+import com.devang.authentication.dto.response.TokenIntrospectionResponse;
+import com.devang.authentication.dto.response.UserInfoResponse;
+import com.devang.authentication.exception.AuthException;
 import com.devang.authentication.security.ApiKeyAuthenticationToken;
 import com.devang.authentication.service.AuthService;
+import com.devang.authentication.service.IdempotencyService;
+import com.devang.authentication.service.IntrospectionService;
+import com.devang.authentication.service.JwtUtilService;
+import com.devang.authentication.service.LoginThrottleService;
+import com.devang.authentication.service.OrganizationService;
+import com.devang.authentication.service.TokenClaims;
+import com.devang.authentication.service.UserInfoService;
+import com.devang.authentication.service.UserInfoService.CachedUserInfo;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
@@ -22,24 +48,61 @@ public class AuthController {
     @Autowired
     private AuthService authService;
 
+    @Autowired
+    private UserInfoService userInfoService;
+
+    @Autowired
+    private JwtUtilService jwtUtilService;
+
+    @Autowired
+    private IntrospectionService introspectionService;
+
+    @Autowired
+    private OrganizationService organizationService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+
+    /**
+     * Retries carrying the same Idempotency-Key and body get 409 with the id of the user the first
+     * attempt created, instead of creating it again; the tokens are not replayed, so the client
+     * logs in.
+     */
     @PostMapping("/signup")
-    public ResponseEntity<ApiResponse<AuthResponse>> signup(@Valid @RequestBody SignupRequest request) {
-        try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            String apiKey = null;
-            if (authentication instanceof ApiKeyAuthenticationToken) {
-                apiKey = ((ApiKeyAuthenticationToken) authentication).getApiKey();
+    public ResponseEntity<ApiResponse<AuthResponse>> signup(
+            @Valid @RequestBody SignupRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String apiKey = null;
+        if (authentication instanceof ApiKeyAuthenticationToken) {
+            apiKey = ((ApiKeyAuthenticationToken) authentication).getApiKey();
+        }
+
+        String callerApiKey = apiKey;
+        return idempotencyService.execute("signup", callerApiKey, idempotencyKey, request, AuthController::signedUp, () -> {
+            try {
+                AuthResponse response = authService.signup(request, callerApiKey);
+                return ResponseEntity.ok(ApiResponse.success("Signup successful", response));
+            } catch (Exception e) {
+                return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Signup failed", e.getMessage()));
             }
+        });
+    }
 
-            AuthResponse response = authService.signup(request, apiKey);
-            return ResponseEntity.ok(ApiResponse.success("Signup successful", response));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("Signup failed", e.getMessage()));
-        }
+    private static IdempotencyService.Created signedUp(AuthResponse response) {
+        Map<String, Object> claims = response.getUserClaims();
+        String clientAppId = TokenClaims.clientAppId(claims);
+        return new IdempotencyService.Created(UUID.fromString(TokenClaims.userId(claims)),
+                UUID.fromString(TokenClaims.organizationId(claims)),
+                clientAppId != null ? UUID.fromString(clientAppId) : null);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<ApiResponse<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
+    public ResponseEntity<ApiResponse<AuthResponse>> login(@Valid @RequestBody LoginRequest request,
+                                                           HttpServletRequest httpRequest) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             String apiKey = null;
@@ -47,10 +110,19 @@ public class AuthController {
                 apiKey = ((ApiKeyAuthenticationToken) authentication).getApiKey();
             }
 
-            AuthResponse response = authService.login(request, apiKey);
+            // Throttled attempts are rejected here with a Retry-After, before the login transaction
+            // takes a connection. The address is the client's, resolved from trusted proxies' X-Forwarded-For
+            String clientIp = httpRequest.getRemoteAddr();
+            loginThrottleService.checkAllowed(LoginThrottleService.usernameKey(apiKey, request.getUsername()), clientIp);
+
+            AuthResponse response = authService.login(request, apiKey, clientIp);
             return ResponseEntity.ok(ApiResponse.success("Login successful", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("Login failed", e.getMessage()));
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(AuthException.statusOf(e));
+            if (e instanceof AuthException authException && authException.getRetryAfterSeconds() > 0) {
+                response.header(HttpHeaders.RETRY_AFTER, String.valueOf(authException.getRetryAfterSeconds()));
+            }
+            return response.body(ApiResponse.error("Login failed", e.getMessage()));
         }
     }
 
@@ -60,7 +132,7 @@ public class AuthController {
             AuthResponse response = authService.refresh(request.getRefreshToken());
             return ResponseEntity.ok(ApiResponse.success("Token refreshed", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("Refresh failed", e.getMessage()));
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Refresh failed", e.getMessage()));
         }
     }
 
@@ -70,11 +142,36 @@ public class AuthController {
             authService.logout(request.getRefreshToken());
             return ResponseEntity.ok(ApiResponse.success("Logged out", "Success"));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("Logout failed", e.getMessage()));
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Logout failed", e.getMessage()));
         }
     }
 
-    @GetMapping("/validate")
+    @PostMapping("/logout-all")
+    public ResponseEntity<ApiResponse<String>> logoutAll(@Valid @RequestBody RefreshTokenRequest request) {
+        try {
+            authService.logoutEverywhere(request.getRefreshToken());
+            return ResponseEntity.ok(ApiResponse.success("Logged out of all sessions", "Success"));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Logout failed", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<ApiResponse<List<SessionResponse>>> sessions(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        String accessToken = bearerToken(authorization);
+        if (accessToken == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ApiResponse.error("Failed to fetch sessions", "Bearer access token is required"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(authService.listSessions(accessToken)));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Failed to fetch sessions", e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/validate", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
     public ResponseEntity<ApiResponse<Object>> validate() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null) {
@@ -83,6 +180,31 @@ public class AuthController {
         return ResponseEntity.ok(ApiResponse.success(authentication));
     }
 
+    @PostMapping(value = "/introspect",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<ApiResponse<TokenIntrospectionResponse>> introspect(@Valid @RequestBody IntrospectRequest request) {
+        try {
+            TokenIntrospectionResponse response = introspectionService.introspect(List.of(request.getToken())).get(0);
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Introspection failed", e.getMessage()));
+        }
+    }
+
+    @PostMapping(value = "/introspect/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<ApiResponse<List<TokenIntrospectionResponse>>> introspectBatch(
+            @Valid @RequestBody BatchIntrospectRequest request) {
+        try {
+            List<TokenIntrospectionResponse> response = introspectionService.introspect(request.getTokens());
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Introspection failed", e.getMessage()));
+        }
+    }
+
     @PostMapping("/sso-exchange")
     public ResponseEntity<ApiResponse<AuthResponse>> ssoExchange(@Valid @RequestBody SsoTokenRequest request) {
         try {
@@ -92,8 +214,86 @@ public class AuthController {
             );
             return ResponseEntity.ok(ApiResponse.success("SSO token exchange successful", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(ApiResponse.error("SSO token exchange failed", e.getMessage()));
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("SSO token exchange failed", e.getMessage()));
         }
     }
-}
 
+    /**
+     * Returns the profile of the client app user the bearer access token belongs to. Responds with
+     * 304 when If-None-Match carries the current ETag, which changes whenever the user row is updated.
+     */
+    @GetMapping("/userinfo")
+    public ResponseEntity<ApiResponse<UserInfoResponse>> userInfo(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String accessToken = bearerToken(authorization);
+        if (accessToken == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ApiResponse.error("Userinfo failed", "Bearer access token is required"));
+        }
+
+        Claims claims;
+        try {
+            claims = jwtUtilService.extractClaims(accessToken);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(ApiResponse.error("Userinfo failed", "Invalid or expired access token"));
+        }
+
+        if (!TokenClaims.USER_TYPE_CLIENT_USER.equals(TokenClaims.userType(claims))) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Userinfo failed", "Userinfo is only available for client app users"));
+        }
+
+        try {
+            CachedUserInfo cached = userInfoService.getUserInfo(UUID.fromString(TokenClaims.userId(claims)));
+            if (matchesAny(ifNoneMatch, cached.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(cached.etag())
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+            return ResponseEntity.ok()
+                    .eTag(cached.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .body(ApiResponse.success(cached.info()));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Userinfo failed", e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of an organization or client app deletion. Served without an API key because the
+     * tenant's keys are disabled as soon as deletion starts; the random job id acts as the credential.
+     */
+    @GetMapping("/deletions/{jobId}")
+    public ResponseEntity<ApiResponse<DeletionJobResponse>> deletionJob(@PathVariable UUID jobId) {
+        try {
+            DeletionJobResponse response = organizationService.getDeletionJob(jobId);
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e)).body(ApiResponse.error("Deletion job not found", e.getMessage()));
+        }
+    }
+
+    // If-None-Match per RFC 9110: a list of possibly weak tags compared weakly, or "*" for any
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        ETag current = ETag.create(etag);
+        for (ETag candidate : ETag.parse(ifNoneMatch)) {
+            if (candidate.isWildcard() || candidate.compare(current, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String bearerToken(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+        return authorization.substring(7);
+    }
+}
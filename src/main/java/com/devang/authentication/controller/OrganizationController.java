@@ -3,12 +3,20 @@ package com.devang.authentication.controller;
 import com.devang.authentication.dto.request.CreateClientAppRequest;
 import com.devang.authentication.dto.request.CreateOrganizationRequest;
 import com.devang.authentication.dto.response.ApiResponse;
+import com.devang.authentication.dto.response.AuthEventResponse;
 import com.devang.authentication.dto.response.ClientAppResponse;
+import com.devang.authentication.dto.response.DeletionJobResponse;
 import com.devang.authentication.dto.response.OrganizationResponse;
+import com.devang.authentication.dto.response.OrganizationStatsResponse;
+import com.devang.authentication.entity.AuthEvent;
+import com.devang.authentication.exception.AuthException;
 import com.devang.authentication.security.ApiKeyAuthenticationToken;
+import com.devang.authentication.service.AuthEventService;
+import com.devang.authentication.service.IdempotencyService;
 import com.devang.authentication.service.OrganizationService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -16,6 +24,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,6 +36,12 @@ public class OrganizationController {
     @Autowired
     private OrganizationService organizationService;
     
+    @Autowired
+    private AuthEventService authEventService;
+    
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     @PostMapping
     public ResponseEntity<ApiResponse<OrganizationResponse>> createOrganization(
             @Valid @RequestBody CreateOrganizationRequest request) {
@@ -34,7 +49,7 @@ public class OrganizationController {
             OrganizationResponse response = organizationService.createOrganization(request);
             return ResponseEntity.ok(ApiResponse.success("Organization created successfully", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to create organization", e.getMessage()));
         }
     }
@@ -45,7 +60,7 @@ public class OrganizationController {
             List<OrganizationResponse> organizations = organizationService.getAllOrganizations();
             return ResponseEntity.ok(ApiResponse.success(organizations));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to fetch organizations", e.getMessage()));
         }
     }
@@ -56,7 +71,7 @@ public class OrganizationController {
             OrganizationResponse response = organizationService.getOrganizationById(id);
             return ResponseEntity.ok(ApiResponse.success(response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Organization not found", e.getMessage()));
         }
     }
@@ -78,11 +93,68 @@ public class OrganizationController {
                     .body(ApiResponse.error("Invalid authentication"));
                     
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to fetch organization", e.getMessage()));
         }
     }
     
+    /**
+     * Dashboard counters of the organization: users, client apps, active sessions, logins per day
+     * over the last {@code days} days (at most 90) and per client app counters.
+     */
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ApiResponse<OrganizationStatsResponse>> getOrganizationStats(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "7") int days) {
+        try {
+            // Verify the organization belongs to the authenticated user
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof ApiKeyAuthenticationToken) {
+                ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
+                if (!apiKeyAuth.belongsToOrganization(id)) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                            .body(ApiResponse.error("Access denied", "You can only view stats of your own organization"));
+                }
+            }
+            
+            OrganizationStatsResponse response = organizationService.getOrganizationStats(id, days);
+            return ResponseEntity.ok(ApiResponse.success(response));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e))
+                    .body(ApiResponse.error("Failed to fetch organization stats", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Recent authentication events of the organization, newest first. Page backwards by passing the
+     * occurredAt of the last event received as {@code before}.
+     */
+    @GetMapping("/{id}/events")
+    public ResponseEntity<ApiResponse<List<AuthEventResponse>>> getAuthEvents(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            // Verify the organization belongs to the authenticated user
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication instanceof ApiKeyAuthenticationToken) {
+                ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
+                if (!apiKeyAuth.belongsToOrganization(id)) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                            .body(ApiResponse.error("Access denied", "You can only view events of your own organization"));
+                }
+            }
+            
+            AuthEvent.Type eventType = type != null ? AuthEvent.Type.valueOf(type.toUpperCase()) : null;
+            List<AuthEventResponse> events = authEventService.recentEvents(id, eventType, before, limit);
+            return ResponseEntity.ok(ApiResponse.success(events));
+        } catch (Exception e) {
+            return ResponseEntity.status(AuthException.statusOf(e))
+                    .body(ApiResponse.error("Failed to fetch events", e.getMessage()));
+        }
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<OrganizationResponse>> updateOrganization(
             @PathVariable UUID id, 
@@ -92,9 +164,7 @@ public class OrganizationController {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!id.toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(id)) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only update your own organization"));
                 }
@@ -103,59 +173,64 @@ public class OrganizationController {
             OrganizationResponse response = organizationService.updateOrganization(id, request);
             return ResponseEntity.ok(ApiResponse.success("Organization updated successfully", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to update organization", e.getMessage()));
         }
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<ApiResponse<String>> deleteOrganization(@PathVariable UUID id) {
+    public ResponseEntity<ApiResponse<DeletionJobResponse>> deleteOrganization(@PathVariable UUID id) {
         try {
             // Verify the organization belongs to the authenticated user
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!id.toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(id)) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only delete your own organization"));
                 }
             }
             
-            organizationService.deleteOrganization(id);
-            return ResponseEntity.ok(ApiResponse.success("Organization deleted successfully", "Success"));
+            DeletionJobResponse job = organizationService.deleteOrganization(id);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Organization deletion started", job));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to delete organization", e.getMessage()));
         }
     }
     
     // Client App Management
     
+    /**
+     * Retries carrying the same Idempotency-Key and body get 409 with the id of the client app the
+     * first attempt created, instead of creating a second one.
+     */
     @PostMapping("/{orgId}/client-apps")
     public ResponseEntity<ApiResponse<ClientAppResponse>> createClientApp(
             @PathVariable UUID orgId,
-            @Valid @RequestBody CreateClientAppRequest request) {
-        try {
-            // Verify the organization belongs to the authenticated user
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication instanceof ApiKeyAuthenticationToken) {
-                ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!orgId.toString().equals(organizationId)) {
-                    return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                            .body(ApiResponse.error("Access denied", "You can only create client apps for your own organization"));
-                }
+            @Valid @RequestBody CreateClientAppRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // Verify the organization belongs to the authenticated user; replays are never served to others
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof ApiKeyAuthenticationToken) {
+            ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
+            if (!apiKeyAuth.belongsToOrganization(orgId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(ApiResponse.error("Access denied", "You can only create client apps for your own organization"));
             }
-            
-            ClientAppResponse response = organizationService.createClientApp(orgId, request);
-            return ResponseEntity.ok(ApiResponse.success("Client app created successfully", response));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                    .body(ApiResponse.error("Failed to create client app", e.getMessage()));
         }
+        
+        return idempotencyService.execute("client-apps:" + orgId, null, idempotencyKey, request,
+                app -> new IdempotencyService.Created(app.getId(), orgId, app.getId()), () -> {
+            try {
+                ClientAppResponse response = organizationService.createClientApp(orgId, request);
+                return ResponseEntity.ok(ApiResponse.success("Client app created successfully", response));
+            } catch (Exception e) {
+                return ResponseEntity.status(AuthException.statusOf(e))
+                        .body(ApiResponse.error("Failed to create client app", e.getMessage()));
+            }
+        });
     }
     
     @GetMapping("/{orgId}/client-apps")
@@ -165,9 +240,7 @@ public class OrganizationController {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!orgId.toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(orgId)) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only view client apps for your own organization"));
                 }
@@ -176,7 +249,7 @@ public class OrganizationController {
             List<ClientAppResponse> clientApps = organizationService.getClientAppsByOrganization(orgId);
             return ResponseEntity.ok(ApiResponse.success(clientApps));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to fetch client apps", e.getMessage()));
         }
     }
@@ -190,9 +263,7 @@ public class OrganizationController {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!response.getOrganizationId().toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(response.getOrganizationId())) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only view client apps from your own organization"));
                 }
@@ -200,7 +271,7 @@ public class OrganizationController {
             
             return ResponseEntity.ok(ApiResponse.success(response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Client app not found", e.getMessage()));
         }
     }
@@ -216,9 +287,7 @@ public class OrganizationController {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!existingApp.getOrganizationId().toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(existingApp.getOrganizationId())) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only update client apps from your own organization"));
                 }
@@ -227,13 +296,13 @@ public class OrganizationController {
             ClientAppResponse response = organizationService.updateClientApp(id, request);
             return ResponseEntity.ok(ApiResponse.success("Client app updated successfully", response));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to update client app", e.getMessage()));
         }
     }
     
     @DeleteMapping("/client-apps/{id}")
-    public ResponseEntity<ApiResponse<String>> deleteClientApp(@PathVariable UUID id) {
+    public ResponseEntity<ApiResponse<DeletionJobResponse>> deleteClientApp(@PathVariable UUID id) {
         try {
             ClientAppResponse existingApp = organizationService.getClientAppById(id);
             
@@ -241,18 +310,17 @@ public class OrganizationController {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication instanceof ApiKeyAuthenticationToken) {
                 ApiKeyAuthenticationToken apiKeyAuth = (ApiKeyAuthenticationToken) authentication;
-                String organizationId = apiKeyAuth.getOrganizationId();
-                
-                if (!existingApp.getOrganizationId().toString().equals(organizationId)) {
+                if (!apiKeyAuth.belongsToOrganization(existingApp.getOrganizationId())) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(ApiResponse.error("Access denied", "You can only delete client apps from your own organization"));
                 }
             }
             
-            organizationService.deleteClientApp(id);
-            return ResponseEntity.ok(ApiResponse.success("Client app deleted successfully", "Success"));
+            DeletionJobResponse job = organizationService.deleteClientApp(id);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Client app deletion started", job));
         } catch (Exception e) {
-            return ResponseEntity.badRequest()
+            return ResponseEntity.status(AuthException.statusOf(e))
                     .body(ApiResponse.error("Failed to delete client app", e.getMessage()));
         }
     }
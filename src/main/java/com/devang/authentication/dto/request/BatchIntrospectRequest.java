@@ -0,0 +1,14 @@
+package com.devang.authentication.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchIntrospectRequest {
+    
+    // Access and/or refresh tokens, in any mix
+    @NotEmpty(message = "At least one token is required")
+    private List<String> tokens;
+}
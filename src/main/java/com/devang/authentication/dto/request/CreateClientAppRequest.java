@@ -10,4 +10,7 @@ public class CreateClientAppRequest {
     private String name;
     
     private String description;
+    
+    // Embed user_metadata in compact-profile access tokens (defaults to off)
+    private Boolean includeMetadataInToken;
 }
\ No newline at end of file
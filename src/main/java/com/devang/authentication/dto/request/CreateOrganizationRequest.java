@@ -10,4 +10,7 @@ public class CreateOrganizationRequest {
     private String name;
     
     private String description;
+    
+    // Provision new users into every client app of the organization in the background
+    private Boolean eagerProvisioning;
 }
\ No newline at end of file
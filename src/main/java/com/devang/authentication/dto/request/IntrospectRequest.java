@@ -0,0 +1,11 @@
+package com.devang.authentication.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class IntrospectRequest {
+    
+    @NotBlank(message = "Token is required")
+    private String token;
+}
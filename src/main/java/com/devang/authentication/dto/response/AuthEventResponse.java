@@ -0,0 +1,27 @@
+package com.devang.authentication.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthEventResponse {
+    
+    private UUID id;
+    // SIGNUP, LOGIN_SUCCESS, LOGIN_FAILURE, REFRESH, REFRESH_REUSE, SSO_EXCHANGE, LOGOUT or LOGOUT_ALL
+    private String type;
+    private UUID clientAppId;
+    // Client app user or org owner id; null for failed logins of unknown usernames
+    private UUID subjectId;
+    private String username;
+    private String clientIp;
+    private String detail;
+    private LocalDateTime occurredAt;
+}
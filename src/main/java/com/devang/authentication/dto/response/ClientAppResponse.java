@@ -18,6 +18,7 @@ public class ClientAppResponse {
     private String name;
     private String description;
     private String clientAppApiKey;
+    private boolean includeMetadataInToken;
     private UUID organizationId;
     private String organizationName;
     private LocalDateTime createdAt;
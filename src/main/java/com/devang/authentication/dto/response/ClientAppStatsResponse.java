@@ -0,0 +1,22 @@
+package com.devang.authentication.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientAppStatsResponse {
+    
+    private UUID clientAppId;
+    private long users;
+    private long activeSessions;
+    private long logins;
+    private LocalDateTime updatedAt;
+}
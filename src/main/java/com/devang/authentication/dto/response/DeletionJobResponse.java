@@ -0,0 +1,30 @@
+package com.devang.authentication.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletionJobResponse {
+    
+    private UUID id;
+    // ORGANIZATION or CLIENT_APP
+    private String targetType;
+    private UUID targetId;
+    // PENDING, RUNNING, COMPLETED or FAILED
+    private String status;
+    // Table currently being emptied
+    private String phase;
+    private long rowsDeleted;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
@@ -18,6 +18,9 @@ public class OrganizationResponse {
     private String name;
     private String description;
     private String orgOwnerApiKey;
+    private boolean eagerProvisioning;
+    // Headline counters; may lag writes by up to stats.flush-interval
+    private OrganizationStatsResponse stats;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
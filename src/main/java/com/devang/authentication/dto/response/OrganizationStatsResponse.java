@@ -0,0 +1,31 @@
+package com.devang.authentication.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrganizationStatsResponse {
+    
+    private UUID organizationId;
+    // Distinct usernames across all client apps
+    private long users;
+    private long clientApps;
+    private long activeSessions;
+    private long loginsToday;
+    // Logins per UTC day, oldest first (stats endpoint only)
+    private Map<LocalDate, Long> dailyLogins;
+    // Per client app counters (stats endpoint only)
+    private List<ClientAppStatsResponse> clientAppStats;
+    private LocalDateTime updatedAt;
+}
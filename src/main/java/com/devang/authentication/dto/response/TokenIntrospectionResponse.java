@@ -0,0 +1,24 @@
+package com.devang.authentication.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionResponse {
+    
+    private boolean active;
+    // "access" or "refresh"; null when the token could not be parsed
+    private String tokenType;
+    private Instant expiresAt;
+    // Access token claims (not returned for refresh tokens)
+    private Map<String, Object> claims;
+    private String error;
+}
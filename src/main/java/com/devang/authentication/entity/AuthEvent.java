@@ -0,0 +1,67 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One authentication event. Rows are written in batches by
+ * {@link com.devang.authentication.service.AuthEventService}, never on the request path.
+ */
+@Entity
+@Table(name = "auth_events", indexes = {
+    @Index(name = "idx_auth_events_org_time", columnList = "organization_id, occurred_at"),
+    @Index(name = "idx_auth_events_time", columnList = "occurred_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthEvent {
+    
+    public enum Type {
+        SIGNUP,
+        LOGIN_SUCCESS,
+        LOGIN_FAILURE,
+        REFRESH,
+        REFRESH_REUSE,
+        SSO_EXCHANGE,
+        LOGOUT,
+        LOGOUT_ALL
+    }
+    
+    // Assigned when the event is created so it is stable before the row exists
+    @Id
+    private UUID id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+    
+    @Column(name = "organization_id")
+    private UUID organizationId;
+    
+    @Column(name = "client_app_id")
+    private UUID clientAppId;
+    
+    // Client app user or org owner id; null when the username was unknown
+    @Column(name = "subject_id")
+    private UUID subjectId;
+    
+    @Column
+    private String username;
+    
+    @Column(name = "client_ip")
+    private String clientIp;
+    
+    @Column
+    private String detail;
+    
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,69 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One login: the family of refresh tokens produced by rotating the token issued at signup, login
+ * or SSO exchange. Belongs to either a client app user or an org owner. The session is only valid
+ * while {@code generation} matches the subject's {@code tokenGeneration}, so bumping that counter
+ * ends every session of the subject at once.
+ */
+@Entity
+@Table(name = "auth_sessions", indexes = {
+    @Index(name = "idx_auth_sessions_user", columnList = "user_id"),
+    @Index(name = "idx_auth_sessions_org_owner", columnList = "org_owner_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthSession {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "org_owner_id")
+    private OrgOwner orgOwner;
+    
+    @Column(nullable = false)
+    private long generation;
+    
+    @Column(nullable = false)
+    private boolean revoked = false;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "last_used_at")
+    private LocalDateTime lastUsedAt;
+    
+    // Expiry of the newest refresh token in the family
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    public long currentSubjectGeneration() {
+        if (user != null) {
+            return user.getIdentity().getTokenGeneration();
+        }
+        return orgOwner != null ? orgOwner.getTokenGeneration() : -1;
+    }
+    
+    public boolean isActive() {
+        return !revoked
+                && generation == currentSubjectGeneration()
+                && LocalDateTime.now().isBefore(expiresAt);
+    }
+}
@@ -31,6 +31,14 @@ public class ClientApp {
     @Column(unique = true, nullable = false)
     private String clientAppApiKey;
     
+    // Embed user_metadata in compact-profile access tokens for this app
+    @Column(name = "include_metadata_in_token")
+    private Boolean includeMetadataInToken;
+    
+    // Set when a deletion job is scheduled; the row itself is removed once its data is gone
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "organization_id", nullable = false)
     private Organization organization;
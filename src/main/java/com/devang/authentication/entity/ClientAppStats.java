@@ -0,0 +1,44 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "client_app_stats", indexes = {
+    @Index(name = "idx_client_app_stats_org", columnList = "organization_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClientAppStats {
+    
+    @Id
+    @Column(name = "client_app_id")
+    private UUID clientAppId;
+    
+    @Column(name = "organization_id", nullable = false)
+    private UUID organizationId;
+    
+    // Memberships of the app
+    @Column(nullable = false)
+    private long users;
+    
+    @Column(name = "active_sessions", nullable = false)
+    private long activeSessions;
+    
+    // Successful logins since the app was created
+    @Column(nullable = false)
+    private long logins;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Last recount of users and active sessions; logins are never recounted
+    @Column(name = "recounted_at")
+    private LocalDateTime recountedAt;
+}
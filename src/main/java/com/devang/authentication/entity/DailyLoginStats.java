@@ -0,0 +1,33 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Table(name = "daily_login_stats", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_daily_login_org_day", columnNames = {"organization_id", "login_day"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyLoginStats {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @Column(name = "organization_id", nullable = false)
+    private UUID organizationId;
+    
+    // UTC day
+    @Column(name = "login_day", nullable = false)
+    private LocalDate day;
+    
+    @Column(nullable = false)
+    private long logins;
+}
@@ -0,0 +1,93 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Background removal of an organization or client app and everything below it. Persisted so
+ * progress can be polled and unfinished jobs are resumed by whichever instance claims them next.
+ */
+@Entity
+@Table(name = "deletion_jobs", indexes = {
+    @Index(name = "idx_deletion_jobs_created", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletionJob {
+    
+    public enum TargetType {
+        ORGANIZATION,
+        CLIENT_APP
+    }
+    
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_type", nullable = false)
+    private TargetType targetType;
+    
+    @Column(name = "target_id", nullable = false)
+    private UUID targetId;
+    
+    @Column(name = "organization_id", nullable = false)
+    private UUID organizationId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+    
+    // Table currently being emptied
+    @Column
+    private String phase;
+    
+    @ColumnDefault("0")
+    @Column(name = "rows_deleted", nullable = false)
+    private long rowsDeleted;
+    
+    @Column
+    private String error;
+    
+    // Instance currently running the job and until when; an expired lease can be claimed by any instance
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private int attempts;
+    
+    // Failed jobs are retried from this time on, with exponential backoff
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,63 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outcome of a request sent with an Idempotency-Key that succeeded: which resource it created, so
+ * retries of the same request can be told about it until the record expires. Never holds the
+ * response, which carries tokens or API keys. Written by
+ * {@link com.devang.authentication.service.IdempotencyService}.
+ */
+@Entity
+@Table(name = "idempotency_records", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_idempotency_scope_key", columnNames = {"scope", "idempotency_key"})
+}, indexes = {
+    @Index(name = "idx_idempotency_expires", columnList = "expires_at"),
+    @Index(name = "idx_idempotency_organization", columnList = "organization_id"),
+    @Index(name = "idx_idempotency_client_app", columnList = "client_app_id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    // Endpoint and caller the key belongs to, e.g. signup:<keyed hash of the caller's API key>
+    @Column(nullable = false)
+    private String scope;
+    
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+    
+    // Keyed hash of the request body; a retry must match it to get the response
+    @Column(nullable = false)
+    private String fingerprint;
+    
+    // The created user or client app
+    @Column(name = "resource_id", nullable = false)
+    private UUID resourceId;
+    
+    @Column(name = "organization_id")
+    private UUID organizationId;
+    
+    // Client app the resource was created in or is; null for org owner signups
+    @Column(name = "client_app_id")
+    private UUID clientAppId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,107 @@
+package com.devang.authentication.entity;
+
+import com.devang.authentication.service.UserInfoCacheListener;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A person within an organization. Holds the credentials and profile shared by all of their
+ * {@link User} memberships, one per client app they can sign in to. The discriminator is empty
+ * except for legacy username variants that could not be merged (see V3__identity_discriminator.sql);
+ * those are only reachable through their existing memberships, never by username.
+ */
+@Entity
+@Table(name = "identities", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_identity_org_username_discriminator",
+            columnNames = {"organization_id", "username", "discriminator"})
+})
+@EntityListeners(UserInfoCacheListener.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Identity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "organization_id", nullable = false)
+    private Organization organization;
+    
+    @Column(nullable = false)
+    private String username;
+    
+    // Id of the legacy user row a conflicting variant came from; empty for everyone else
+    @ColumnDefault("''")
+    @Column(nullable = false)
+    private String discriminator = "";
+    
+    @Column(nullable = false)
+    private String password;
+    
+    @Column
+    private String email;
+    
+    @Column
+    private String firstName;
+    
+    @Column
+    private String lastName;
+    
+    @Column(name = "user_metadata", columnDefinition = "TEXT")
+    private String userMetadataJson;
+    
+    // Bumped by "logout everywhere"; sessions issued under an older value are dead
+    @ColumnDefault("0")
+    @Column(name = "token_generation", nullable = false)
+    private long tokenGeneration;
+    
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // JSON helper methods for data field
+    @Transient
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    
+    public Map<String, Object> getUserMetadata() {
+        if (userMetadataJson == null || userMetadataJson.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(userMetadataJson, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            return new HashMap<>();
+        }
+    }
+    
+    public void setUserMetadata(Map<String, Object> userMetadata) {
+        if (userMetadata == null) {
+            this.userMetadataJson = null;
+        } else {
+            try {
+                this.userMetadataJson = objectMapper.writeValueAsString(userMetadata);
+            } catch (JsonProcessingException e) {
+                this.userMetadataJson = null;
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -36,6 +37,11 @@ public class OrgOwner {
     @Column
     private String lastName;
     
+    // Bumped by "logout everywhere"; sessions issued under an older value are dead
+    @ColumnDefault("0")
+    @Column(name = "token_generation", nullable = false)
+    private long tokenGeneration;
+    
     @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "organization_id", referencedColumnName = "id")
     private Organization organization;
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -31,6 +32,15 @@ public class Organization {
     @Column(unique = true, nullable = false)
     private String orgOwnerApiKey;
     
+    // Copy every client app user into all client apps of the organization up front
+    @ColumnDefault("false")
+    @Column(name = "eager_provisioning", nullable = false)
+    private boolean eagerProvisioning;
+    
+    // Set when a deletion job is scheduled; the row itself is removed once its data is gone
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    
     @OneToMany(mappedBy = "organization", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<ClientApp> clientApps;
     
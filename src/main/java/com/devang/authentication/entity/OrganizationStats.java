@@ -0,0 +1,42 @@
+package com.devang.authentication.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Dashboard counters of one organization, maintained by {@link com.devang.authentication.service.StatsService}
+ * so reading them never scans the tenant's data.
+ */
+@Entity
+@Table(name = "organization_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrganizationStats {
+    
+    @Id
+    @Column(name = "organization_id")
+    private UUID organizationId;
+    
+    // Identities, i.e. distinct usernames across all client apps
+    @Column(nullable = false)
+    private long users;
+    
+    @Column(name = "client_apps", nullable = false)
+    private long clientApps;
+    
+    @Column(name = "active_sessions", nullable = false)
+    private long activeSessions;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Last full recount; deltas buffered since before it are already part of the recounted values
+    @Column(name = "recounted_at")
+    private LocalDateTime recountedAt;
+}
@@ -30,6 +30,15 @@ public class RefreshToken {
     @JoinColumn(name = "user_id", nullable = true)
     private User user;
     
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "org_owner_id", nullable = true)
+    private OrgOwner orgOwner;
+    
+    // Null only for tokens issued before sessions existed
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id", nullable = true)
+    private AuthSession session;
+    
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
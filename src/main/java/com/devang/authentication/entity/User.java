@@ -1,8 +1,5 @@
 package com.devang.authentication.entity;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,14 +8,21 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Membership of an {@link Identity} in one client app. Credentials and profile live on the
+ * identity; the username is repeated here only so login can resolve (username, client app)
+ * through uk_username_client_app in one indexed lookup.
+ */
 @Entity
 @Table(name = "users", uniqueConstraints = {
     @UniqueConstraint(name = "uk_username_client_app", columnNames = {"username", "client_app_id"})
+}, indexes = {
+    @Index(name = "idx_users_identity", columnList = "identity_id"),
+    @Index(name = "idx_users_client_app", columnList = "client_app_id"),
+    @Index(name = "idx_users_organization", columnList = "organization_id")
 })
 @Data
 @NoArgsConstructor
@@ -32,20 +36,10 @@ public class User {
     @Column(nullable = false)
     private String username;
     
-    @Column(nullable = false)
-    private String password;
-    
-    @Column
-    private String email;
-    
-    @Column
-    private String firstName;
-    
-    @Column
-    private String lastName;
-    
-    @Column(name = "user_metadata", columnDefinition = "TEXT")
-    private String userMetadataJson;
+    // Nullable for rows the V1 migration could not link, i.e. legacy rows without a password
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "identity_id")
+    private Identity identity;
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "organization_id", nullable = false)
@@ -65,31 +59,4 @@ public class User {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
-    
-    // JSON helper methods for data field
-    @Transient
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    
-    public Map<String, Object> getUserMetadata() {
-        if (userMetadataJson == null || userMetadataJson.trim().isEmpty()) {
-            return null;
-        }
-        try {
-            return objectMapper.readValue(userMetadataJson, new TypeReference<Map<String, Object>>() {});
-        } catch (JsonProcessingException e) {
-            return new HashMap<>();
-        }
-    }
-    
-    public void setUserMetadata(Map<String, Object> userMetadata) {
-        if (userMetadata == null) {
-            this.userMetadataJson = null;
-        } else {
-            try {
-                this.userMetadataJson = objectMapper.writeValueAsString(userMetadata);
-            } catch (JsonProcessingException e) {
-                this.userMetadataJson = null;
-            }
-        }
-    }
-}
\ No newline at end of file
+}
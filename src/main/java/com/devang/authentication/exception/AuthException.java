@@ -0,0 +1,73 @@
+package com.devang.authentication.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Expected failure of a request: bad credentials, a duplicate name, an unknown or revoked token.
+ * These are part of normal traffic (a credential stuffing run is nothing but failed logins), so
+ * they carry no stack trace and are cheap to throw; the status tells the client what went wrong.
+ */
+public class AuthException extends RuntimeException {
+
+    private final HttpStatus status;
+    // Seconds the client should wait before retrying, sent as Retry-After (0 = no header)
+    private final long retryAfterSeconds;
+
+    public AuthException(HttpStatus status, String message) {
+        this(status, message, 0);
+    }
+
+    public AuthException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public static AuthException badRequest(String message) {
+        return new AuthException(HttpStatus.BAD_REQUEST, message);
+    }
+
+    public static AuthException unauthorized(String message) {
+        return new AuthException(HttpStatus.UNAUTHORIZED, message);
+    }
+
+    public static AuthException forbidden(String message) {
+        return new AuthException(HttpStatus.FORBIDDEN, message);
+    }
+
+    public static AuthException notFound(String message) {
+        return new AuthException(HttpStatus.NOT_FOUND, message);
+    }
+
+    public static AuthException conflict(String message) {
+        return new AuthException(HttpStatus.CONFLICT, message);
+    }
+
+    public static AuthException tooManyRequests(String message) {
+        return new AuthException(HttpStatus.TOO_MANY_REQUESTS, message);
+    }
+
+    public static AuthException tooManyRequests(String message, long retryAfterSeconds) {
+        return new AuthException(HttpStatus.TOO_MANY_REQUESTS, message, retryAfterSeconds);
+    }
+
+    public static AuthException serviceUnavailable(String message) {
+        return new AuthException(HttpStatus.SERVICE_UNAVAILABLE, message);
+    }
+
+    /**
+     * Status a controller answers a failed call with; anything that is not an AuthException keeps
+     * the historical 400.
+     */
+    public static HttpStatus statusOf(Exception e) {
+        return e instanceof AuthException authException ? authException.getStatus() : HttpStatus.BAD_REQUEST;
+    }
+}
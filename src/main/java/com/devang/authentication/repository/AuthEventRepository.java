@@ -0,0 +1,27 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.AuthEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface AuthEventRepository extends JpaRepository<AuthEvent, UUID> {
+    
+    List<AuthEvent> findByOrganizationIdAndOccurredAtBeforeOrderByOccurredAtDesc(
+            UUID organizationId, LocalDateTime before, Pageable pageable);
+    
+    List<AuthEvent> findByOrganizationIdAndTypeAndOccurredAtBeforeOrderByOccurredAtDesc(
+            UUID organizationId, AuthEvent.Type type, LocalDateTime before, Pageable pageable);
+    
+    @Query("SELECT e.id FROM AuthEvent e WHERE e.occurredAt < :cutoff")
+    List<UUID> findIdsOlderThan(LocalDateTime cutoff, Pageable pageable);
+    
+    @Query("SELECT e.id FROM AuthEvent e WHERE e.organizationId = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+}
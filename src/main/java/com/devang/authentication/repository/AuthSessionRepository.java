@@ -0,0 +1,53 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.AuthSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface AuthSessionRepository extends JpaRepository<AuthSession, UUID> {
+    
+    // Active sessions of an identity across every client app of the organization
+    @Query("SELECT s FROM AuthSession s JOIN FETCH s.user u JOIN FETCH u.clientApp JOIN u.identity i " +
+           "WHERE i.id = :identityId " +
+           "AND s.revoked = false AND s.generation = i.tokenGeneration AND s.expiresAt > :now " +
+           "ORDER BY s.lastUsedAt DESC")
+    List<AuthSession> findActiveByIdentity(UUID identityId, LocalDateTime now);
+    
+    @Query("SELECT s FROM AuthSession s JOIN FETCH s.orgOwner o " +
+           "WHERE o.id = :orgOwnerId " +
+           "AND s.revoked = false AND s.generation = o.tokenGeneration AND s.expiresAt > :now " +
+           "ORDER BY s.lastUsedAt DESC")
+    List<AuthSession> findActiveByOrgOwner(UUID orgOwnerId, LocalDateTime now);
+    
+    // Those of the given sessions still active, by the same rule as AuthSession.isActive
+    @Query("SELECT s.id FROM AuthSession s LEFT JOIN s.user u LEFT JOIN u.identity i LEFT JOIN s.orgOwner o " +
+           "WHERE s.id IN :ids AND s.revoked = false AND s.expiresAt > :now " +
+           "AND s.generation = COALESCE(i.tokenGeneration, o.tokenGeneration)")
+    List<UUID> findActiveIds(Collection<UUID> ids, LocalDateTime now);
+    
+    // Commits on its own so the revocation survives the caller's rollback
+    @Modifying
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("UPDATE AuthSession s SET s.revoked = true WHERE s.id = :id")
+    void revokeSession(UUID id);
+    
+    @Query("SELECT s.id FROM AuthSession s WHERE s.user.clientApp.id = :clientAppId")
+    List<UUID> findIdsByClientAppId(UUID clientAppId, Pageable pageable);
+    
+    @Query("SELECT s.id FROM AuthSession s WHERE s.user.organization.id = :organizationId")
+    List<UUID> findIdsByUserOrganizationId(UUID organizationId, Pageable pageable);
+    
+    @Query("SELECT s.id FROM AuthSession s WHERE s.orgOwner.organization.id = :organizationId")
+    List<UUID> findIdsByOrgOwnerOrganizationId(UUID organizationId, Pageable pageable);
+}
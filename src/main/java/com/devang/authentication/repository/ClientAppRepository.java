@@ -2,9 +2,14 @@ package com.devang.authentication.repository;
 
 import com.devang.authentication.entity.ClientApp;
 import com.devang.authentication.entity.Organization;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,6 +19,10 @@ public interface ClientAppRepository extends JpaRepository<ClientApp, UUID> {
     
     Optional<ClientApp> findByClientAppApiKey(String clientAppApiKey);
     
+    // Organization loaded up front so coalesced lookups can snapshot the app without lazy loading
+    @EntityGraph(attributePaths = {"organization"})
+    Optional<ClientApp> findWithOrganizationByClientAppApiKey(String clientAppApiKey);
+    
     List<ClientApp> findByOrganization(Organization organization);
     
     List<ClientApp> findByOrganizationId(UUID organizationId);
@@ -23,4 +32,17 @@ public interface ClientAppRepository extends JpaRepository<ClientApp, UUID> {
     boolean existsByNameAndOrganization(String name, Organization organization);
     
     boolean existsByClientAppApiKey(String clientAppApiKey);
+    
+    List<ClientApp> findByOrganizationIdAndDeletedAtIsNull(UUID organizationId);
+    
+    boolean existsByNameAndOrganizationAndDeletedAtIsNull(String name, Organization organization);
+    
+    // Tombstones every API key of the organization in one statement
+    @Modifying
+    @Query("UPDATE ClientApp ca SET ca.clientAppApiKey = CONCAT('del_', REPLACE(CAST(ca.id AS String), '-', '')), " +
+           "ca.deletedAt = :now WHERE ca.organization.id = :organizationId AND ca.deletedAt IS NULL")
+    int disableByOrganizationId(UUID organizationId, LocalDateTime now);
+    
+    @Query("SELECT ca.id FROM ClientApp ca WHERE ca.organization.id = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
 }
\ No newline at end of file
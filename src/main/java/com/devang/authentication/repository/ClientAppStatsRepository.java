@@ -0,0 +1,49 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.ClientAppStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ClientAppStatsRepository extends JpaRepository<ClientAppStats, UUID> {
+    
+    List<ClientAppStats> findByOrganizationId(UUID organizationId);
+    
+    @Query("SELECT s.clientAppId FROM ClientAppStats s WHERE s.organizationId = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+    
+    // Users and sessions buffered since before the last recount are skipped, the recount already counted them
+    @Modifying
+    @Query(value = "INSERT INTO client_app_stats (client_app_id, organization_id, users, active_sessions, logins, updated_at) " +
+                   "VALUES (:clientAppId, :organizationId, :users, :activeSessions, :logins, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (client_app_id) DO UPDATE SET " +
+                   "users = client_app_stats.users + CASE WHEN client_app_stats.recounted_at >= :since THEN 0 ELSE EXCLUDED.users END, " +
+                   "active_sessions = client_app_stats.active_sessions + " +
+                   "CASE WHEN client_app_stats.recounted_at >= :since THEN 0 ELSE EXCLUDED.active_sessions END, " +
+                   "logins = client_app_stats.logins + EXCLUDED.logins, " +
+                   "updated_at = EXCLUDED.updated_at", nativeQuery = true)
+    int addDeltas(UUID clientAppId, UUID organizationId, long users, long activeSessions, long logins, LocalDateTime since);
+    
+    // Recounts users and active sessions of every client app of the organization; logins have no source to recount from
+    @Modifying
+    @Query(value = "INSERT INTO client_app_stats (client_app_id, organization_id, users, active_sessions, logins, updated_at, recounted_at) " +
+                   "SELECT ca.id, ca.organization_id, " +
+                   "(SELECT COUNT(*) FROM users u WHERE u.client_app_id = ca.id), " +
+                   "(SELECT COUNT(*) FROM auth_sessions s JOIN users u ON u.id = s.user_id " +
+                   " JOIN identities i ON i.id = u.identity_id " +
+                   " WHERE u.client_app_id = ca.id AND s.revoked = false AND s.expires_at > :now " +
+                   " AND s.generation = i.token_generation), " +
+                   "0, CURRENT_TIMESTAMP, :now " +
+                   "FROM client_apps ca WHERE ca.organization_id = :organizationId AND ca.deleted_at IS NULL " +
+                   "ON CONFLICT (client_app_id) DO UPDATE SET " +
+                   "users = EXCLUDED.users, active_sessions = EXCLUDED.active_sessions, " +
+                   "updated_at = EXCLUDED.updated_at, recounted_at = EXCLUDED.recounted_at", nativeQuery = true)
+    int recountOrganization(UUID organizationId, LocalDateTime now);
+}
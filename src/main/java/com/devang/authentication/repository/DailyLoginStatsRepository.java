@@ -0,0 +1,31 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.DailyLoginStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface DailyLoginStatsRepository extends JpaRepository<DailyLoginStats, UUID> {
+    
+    Optional<DailyLoginStats> findByOrganizationIdAndDay(UUID organizationId, LocalDate day);
+    
+    List<DailyLoginStats> findByOrganizationIdAndDayGreaterThanEqualOrderByDayAsc(UUID organizationId, LocalDate from);
+    
+    @Query("SELECT d.id FROM DailyLoginStats d WHERE d.organizationId = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+    
+    @Modifying
+    @Query(value = "INSERT INTO daily_login_stats (id, organization_id, login_day, logins) " +
+                   "VALUES (gen_random_uuid(), :organizationId, :day, :logins) " +
+                   "ON CONFLICT (organization_id, login_day) DO UPDATE SET " +
+                   "logins = daily_login_stats.logins + EXCLUDED.logins", nativeQuery = true)
+    int addLogins(UUID organizationId, LocalDate day, long logins);
+}
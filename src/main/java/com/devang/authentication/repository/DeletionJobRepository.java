@@ -0,0 +1,49 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.DeletionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DeletionJobRepository extends JpaRepository<DeletionJob, UUID> {
+    
+    // Unfinished jobs no instance holds a live lease on and that are not waiting out a retry backoff
+    @Query("SELECT j.id FROM DeletionJob j WHERE j.status <> :completed " +
+           "AND (j.leaseExpiresAt IS NULL OR j.leaseExpiresAt < :now) " +
+           "AND (j.nextAttemptAt IS NULL OR j.nextAttemptAt <= :now)")
+    List<UUID> findClaimableIds(DeletionJob.Status completed, LocalDateTime now);
+    
+    // Atomic, so of several instances trying to run the same job exactly one gets 1 back
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.status = :running, j.leaseOwner = :owner, j.leaseExpiresAt = :leaseUntil, " +
+           "j.attempts = j.attempts + 1, j.nextAttemptAt = NULL, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.status <> :completed " +
+           "AND (j.leaseExpiresAt IS NULL OR j.leaseExpiresAt < :now) " +
+           "AND (j.nextAttemptAt IS NULL OR j.nextAttemptAt <= :now)")
+    int claim(UUID id, String owner, DeletionJob.Status running, DeletionJob.Status completed,
+              LocalDateTime now, LocalDateTime leaseUntil);
+    
+    // Committed together with each chunk, so the reported count never runs ahead of the data. Also
+    // renews the lease; 0 means another instance took the job over
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.phase = :phase, j.rowsDeleted = j.rowsDeleted + :rows, j.updatedAt = :now, " +
+           "j.leaseExpiresAt = :leaseUntil WHERE j.id = :id AND j.leaseOwner = :owner")
+    int addProgress(UUID id, String owner, String phase, long rows, LocalDateTime now, LocalDateTime leaseUntil);
+    
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.status = :status, j.error = :error, j.completedAt = :completedAt, " +
+           "j.nextAttemptAt = :nextAttemptAt, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.updatedAt = :now " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner")
+    int release(UUID id, String owner, DeletionJob.Status status, String error, LocalDateTime completedAt,
+                LocalDateTime nextAttemptAt, LocalDateTime now);
+    
+    // Jobs outlive the rows they delete, so other instances learn about disabled API keys from them
+    @Query("SELECT j.targetId FROM DeletionJob j WHERE j.targetType = :targetType AND j.createdAt > :since")
+    List<UUID> findTargetIdsCreatedSince(DeletionJob.TargetType targetType, LocalDateTime since);
+}
@@ -0,0 +1,31 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.IdempotencyRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, UUID> {
+    
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+    
+    @Query("SELECT r.id FROM IdempotencyRecord r WHERE r.organizationId = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+    
+    @Query("SELECT r.id FROM IdempotencyRecord r WHERE r.clientAppId = :clientAppId")
+    List<UUID> findIdsByClientAppId(UUID clientAppId, Pageable pageable);
+    
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
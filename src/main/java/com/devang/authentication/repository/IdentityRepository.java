@@ -0,0 +1,34 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.Identity;
+import com.devang.authentication.entity.Organization;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdentityRepository extends JpaRepository<Identity, UUID> {
+    
+    // The identity a username signs up as; legacy conflict variants are left out
+    @Query("SELECT i FROM Identity i WHERE i.organization = :organization AND i.username = :username " +
+           "AND i.discriminator = ''")
+    Optional<Identity> findByOrganizationAndUsername(Organization organization, String username);
+    
+    @Modifying
+    @Query("UPDATE Identity i SET i.tokenGeneration = i.tokenGeneration + 1 WHERE i.id = :id")
+    int incrementTokenGeneration(UUID id);
+    
+    @Query("SELECT i.id FROM Identity i WHERE i.organization.id = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+    
+    // Identities left without any client app membership, e.g. after a client app is deleted
+    @Query("SELECT i.id FROM Identity i WHERE i.organization.id = :organizationId " +
+           "AND NOT EXISTS (SELECT 1 FROM User u WHERE u.identity = i)")
+    List<UUID> findOrphanIdsByOrganizationId(UUID organizationId, Pageable pageable);
+}
@@ -1,9 +1,13 @@
 package com.devang.authentication.repository;
 
 import com.devang.authentication.entity.OrgOwner;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,4 +21,11 @@ public interface OrgOwnerRepository extends JpaRepository<OrgOwner, UUID> {
     boolean existsByUsername(String username);
     
     boolean existsByEmail(String email);
+    
+    @Modifying
+    @Query("UPDATE OrgOwner o SET o.tokenGeneration = o.tokenGeneration + 1 WHERE o.id = :id")
+    int incrementTokenGeneration(UUID id);
+    
+    @Query("SELECT o.id FROM OrgOwner o WHERE o.organization.id = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
 }
\ No newline at end of file
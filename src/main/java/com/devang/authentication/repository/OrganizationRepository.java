@@ -2,8 +2,10 @@ package com.devang.authentication.repository;
 
 import com.devang.authentication.entity.Organization;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,4 +19,7 @@ public interface OrganizationRepository extends JpaRepository<Organization, UUID
     boolean existsByName(String name);
     
     boolean existsByOrgOwnerApiKey(String orgOwnerApiKey);
+    
+    @Query("SELECT o.id FROM Organization o WHERE o.deletedAt IS NULL")
+    List<UUID> findActiveIds();
 }
\ No newline at end of file
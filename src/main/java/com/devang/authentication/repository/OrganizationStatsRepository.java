@@ -0,0 +1,50 @@
+package com.devang.authentication.repository;
+
+import com.devang.authentication.entity.OrganizationStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface OrganizationStatsRepository extends JpaRepository<OrganizationStats, UUID> {
+    
+    // Deltas buffered since before the last recount are skipped, the recount already counted them
+    @Modifying
+    @Query(value = "INSERT INTO organization_stats (organization_id, users, client_apps, active_sessions, updated_at) " +
+                   "VALUES (:organizationId, :users, :clientApps, :activeSessions, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (organization_id) DO UPDATE SET " +
+                   "users = organization_stats.users + EXCLUDED.users, " +
+                   "client_apps = organization_stats.client_apps + EXCLUDED.client_apps, " +
+                   "active_sessions = organization_stats.active_sessions + EXCLUDED.active_sessions, " +
+                   "updated_at = EXCLUDED.updated_at " +
+                   "WHERE organization_stats.recounted_at IS NULL OR organization_stats.recounted_at < :since", nativeQuery = true)
+    int addDeltas(UUID organizationId, long users, long clientApps, long activeSessions, LocalDateTime since);
+    
+    // Recounts one organization from the source tables and overwrites its counters
+    @Modifying
+    @Query(value = "INSERT INTO organization_stats (organization_id, users, client_apps, active_sessions, updated_at, recounted_at) " +
+                   "SELECT o.id, " +
+                   "(SELECT COUNT(*) FROM identities i WHERE i.organization_id = o.id), " +
+                   "(SELECT COUNT(*) FROM client_apps ca WHERE ca.organization_id = o.id AND ca.deleted_at IS NULL), " +
+                   "(SELECT COUNT(*) FROM auth_sessions s JOIN users u ON u.id = s.user_id " +
+                   " JOIN identities i ON i.id = u.identity_id " +
+                   " WHERE u.organization_id = o.id AND s.revoked = false AND s.expires_at > :now " +
+                   " AND s.generation = i.token_generation) + " +
+                   "(SELECT COUNT(*) FROM auth_sessions s JOIN org_owners ow ON ow.id = s.org_owner_id " +
+                   " WHERE ow.organization_id = o.id AND s.revoked = false AND s.expires_at > :now " +
+                   " AND s.generation = ow.token_generation), " +
+                   "CURRENT_TIMESTAMP, :now " +
+                   "FROM organizations o WHERE o.id = :organizationId " +
+                   "ON CONFLICT (organization_id) DO UPDATE SET " +
+                   "users = EXCLUDED.users, client_apps = EXCLUDED.client_apps, " +
+                   "active_sessions = EXCLUDED.active_sessions, updated_at = EXCLUDED.updated_at, " +
+                   "recounted_at = EXCLUDED.recounted_at", nativeQuery = true)
+    int recount(UUID organizationId, LocalDateTime now);
+    
+    @Query("SELECT MAX(s.recountedAt) FROM OrganizationStats s")
+    LocalDateTime findLastRecountedAt();
+}
@@ -2,12 +2,15 @@ package com.devang.authentication.repository;
 
 import com.devang.authentication.entity.RefreshToken;
 import com.devang.authentication.entity.User;
+import com.devang.authentication.store.StoredRefreshToken;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,13 +20,28 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     
     Optional<RefreshToken> findByToken(String token);
     
+    List<RefreshToken> findByTokenIn(Collection<String> tokens);
+    
+    // Flat projections for JpaRefreshTokenStore; the ids come straight from the foreign key columns
+    @Query("SELECT new com.devang.authentication.store.StoredRefreshToken(rt.token, u.id, o.id, s.id, " +
+           "COALESCE(u.organization.id, o.organization.id), u.clientApp.id, rt.expiryDate, rt.revoked) " +
+           "FROM RefreshToken rt LEFT JOIN rt.user u LEFT JOIN rt.orgOwner o LEFT JOIN rt.session s " +
+           "WHERE rt.token = :token")
+    Optional<StoredRefreshToken> findStoredByToken(String token);
+    
+    @Query("SELECT new com.devang.authentication.store.StoredRefreshToken(rt.token, u.id, o.id, s.id, " +
+           "COALESCE(u.organization.id, o.organization.id), u.clientApp.id, rt.expiryDate, rt.revoked) " +
+           "FROM RefreshToken rt LEFT JOIN rt.user u LEFT JOIN rt.orgOwner o LEFT JOIN rt.session s " +
+           "WHERE rt.token IN :tokens")
+    List<StoredRefreshToken> findStoredByTokenIn(Collection<String> tokens);
+    
     List<RefreshToken> findByUser(User user);
     
     List<RefreshToken> findByUserAndRevokedFalse(User user);
     
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :now")
-    void deleteExpiredTokens(LocalDateTime now);
+    int deleteExpiredTokens(LocalDateTime now);
     
     @Modifying
     @Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.user = :user")
@@ -32,4 +50,18 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
     @Modifying
     @Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.token = :token")
     void revokeToken(String token);
+    
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.token = :token AND rt.revoked = false")
+    int revokeActiveToken(String token);
+    
+    // Id pages for chunked tenant deletion; deleted with deleteAllByIdInBatch
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.user.clientApp.id = :clientAppId")
+    List<UUID> findIdsByClientAppId(UUID clientAppId, Pageable pageable);
+    
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.user.organization.id = :organizationId")
+    List<UUID> findIdsByUserOrganizationId(UUID organizationId, Pageable pageable);
+    
+    @Query("SELECT rt.id FROM RefreshToken rt WHERE rt.orgOwner.organization.id = :organizationId")
+    List<UUID> findIdsByOrgOwnerOrganizationId(UUID organizationId, Pageable pageable);
 }
\ No newline at end of file
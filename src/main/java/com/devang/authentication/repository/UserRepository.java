@@ -3,7 +3,11 @@ package com.devang.authentication.repository;
 import com.devang.authentication.entity.ClientApp;
 import com.devang.authentication.entity.Organization;
 import com.devang.authentication.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,10 +19,11 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     
     Optional<User> findByUsername(String username);
     
-    Optional<User> findByEmail(String email);
-    
     Optional<User> findByUsernameAndClientApp(String username, ClientApp clientApp);
     
+    @EntityGraph(attributePaths = {"identity", "clientApp", "clientApp.organization"})
+    Optional<User> findWithClientAppById(UUID id);
+    
     Optional<User> findByUsernameAndOrganization(String username, Organization organization);
     
     List<User> findByOrganization(Organization organization);
@@ -29,7 +34,54 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     
     boolean existsByUsername(String username);
     
-    boolean existsByEmail(String email);
-    
     boolean existsByUsernameAndClientApp(String username, ClientApp clientApp);
-}
\ No newline at end of file
+    
+    @EntityGraph(attributePaths = {"identity"})
+    Optional<User> findWithIdentityByUsernameAndClientApp(String username, ClientApp clientApp);
+    
+    @EntityGraph(attributePaths = {"identity"})
+    Optional<User> findWithIdentityById(UUID id);
+    
+    /**
+     * Adds the source user's identity to the target client app unless the username already exists there.
+     * Relies on uk_username_client_app, so concurrent first-time SSO exchanges insert at most one row
+     * and the losers simply see 0 rows affected.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO users (id, username, identity_id, organization_id, client_app_id, created_at, updated_at) " +
+                   "SELECT :id, u.username, u.identity_id, :organizationId, :clientAppId, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                   "FROM users u WHERE u.id = :sourceUserId " +
+                   "ON CONFLICT (username, client_app_id) DO NOTHING", nativeQuery = true)
+    int provisionIfAbsent(UUID id, UUID sourceUserId, UUID organizationId, UUID clientAppId);
+    
+    // Same membership insert as provisionIfAbsent, into every other client app of the user's organization at once
+    @Modifying
+    @Query(value = "INSERT INTO users (id, username, identity_id, organization_id, client_app_id, created_at, updated_at) " +
+                   "SELECT gen_random_uuid(), u.username, u.identity_id, ca.organization_id, ca.id, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                   "FROM users u JOIN client_apps ca ON ca.organization_id = u.organization_id AND ca.id <> u.client_app_id " +
+                   "AND ca.deleted_at IS NULL " +
+                   "WHERE u.id = :userId " +
+                   "ON CONFLICT (username, client_app_id) DO NOTHING", nativeQuery = true)
+    int provisionIntoOrganizationApps(UUID userId);
+    
+    @Query(value = "SELECT i.username FROM identities i " +
+                   "WHERE i.organization_id = :organizationId AND i.discriminator = '' AND i.username > :after " +
+                   "ORDER BY i.username LIMIT :limit", nativeQuery = true)
+    List<String> findUsernamesInOrganizationAfter(UUID organizationId, String after, int limit);
+    
+    // One membership row per identity; the identity already carries the shared profile. Legacy
+    // conflict variants share a username, so none of them is provisioned under it
+    @Modifying
+    @Query(value = "INSERT INTO users (id, username, identity_id, organization_id, client_app_id, created_at, updated_at) " +
+                   "SELECT gen_random_uuid(), i.username, i.id, i.organization_id, :clientAppId, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+                   "FROM identities i WHERE i.organization_id = :organizationId AND i.discriminator = '' " +
+                   "AND i.username IN (:usernames) " +
+                   "ON CONFLICT (username, client_app_id) DO NOTHING", nativeQuery = true)
+    int provisionUsernamesIntoClientApp(List<String> usernames, UUID organizationId, UUID clientAppId);
+    
+    @Query("SELECT u.id FROM User u WHERE u.clientApp.id = :clientAppId")
+    List<UUID> findIdsByClientAppId(UUID clientAppId, Pageable pageable);
+    
+    @Query("SELECT u.id FROM User u WHERE u.organization.id = :organizationId")
+    List<UUID> findIdsByOrganizationId(UUID organizationId, Pageable pageable);
+}
@@ -1,31 +1,67 @@
 package com.devang.authentication.security;
 
-import com.devang.authentication.repository.ClientAppRepository;
-import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.service.SingleFlight;
+import com.devang.authentication.store.ApiKeyStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Resolves the caller of a request from its API key, doing only the work its route needs: probes
+ * and the token based auth endpoints are passed through untouched, signup, login and validate
+ * resolve an optional key, and everything else requires a valid one. Concurrent cache misses on
+ * the same key share one lookup. The time spent here is recorded in auth.filter per route.
+ */
 @Component
 public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
 
-    private final OrganizationRepository organizationRepository;
-    private final ClientAppRepository clientAppRepository;
+    // Auth endpoints that authenticate with a token or job id in the request and never read the API key
+    private static final Set<String> TOKEN_ONLY_PATHS = Set.of(
+            "/api/auth/refresh",
+            "/api/auth/logout",
+            "/api/auth/logout-all",
+            "/api/auth/sessions",
+            "/api/auth/introspect",
+            "/api/auth/introspect/batch",
+            "/api/auth/sso-exchange",
+            "/api/auth/userinfo"
+    );
+
+    private enum Route {
+        PROBE, AUTH_TOKEN_ONLY, AUTH_CALLER, API
+    }
+
+    private final ApiKeyStore apiKeyStore;
+    private final ApiKeyPrincipalCache principalCache;
+    private final SingleFlight<String, ApiKeyPrincipal> principalLoads;
+    private final Map<Route, Timer> timers = new EnumMap<>(Route.class);
 
     public ApiKeyAuthenticationFilter(
-            OrganizationRepository organizationRepository,
-            ClientAppRepository clientAppRepository) {
-        this.organizationRepository = organizationRepository;
-        this.clientAppRepository = clientAppRepository;
+            ApiKeyStore apiKeyStore,
+            ApiKeyPrincipalCache principalCache,
+            MeterRegistry meterRegistry) {
+        this.apiKeyStore = apiKeyStore;
+        this.principalCache = principalCache;
+        this.principalLoads = new SingleFlight<>("api_key", meterRegistry);
+        for (Route route : Route.values()) {
+            timers.put(route, Timer.builder("auth.filter")
+                    .description("Time spent authenticating the API key of a request")
+                    .tag("route", route.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
     }
 
     @Override
@@ -33,93 +69,111 @@ public class ApiKeyAuthenticationFilter extends OncePerRequestFilter {
                                   HttpServletResponse response, 
                                   FilterChain filterChain) throws ServletException, IOException {
         
-        String apiKey = request.getHeader("apikey");
-        String requestURI = request.getRequestURI();
+        long start = System.nanoTime();
+        Route route = route(request.getRequestURI());
+        boolean proceed = authenticate(route, request, response);
+        timers.get(route).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         
-        // Skip authentication for auth endpoints
+        if (proceed) {
+            filterChain.doFilter(request, response);
+        }
+    }
+    
+    private static Route route(String requestURI) {
+        // Health and readiness probes never carry an API key
+        if (requestURI.startsWith("/actuator/health")) {
+            return Route.PROBE;
+        }
         if (requestURI.startsWith("/api/auth/")) {
-            // Set authentication context based on API key presence
-            if (apiKey != null && !apiKey.isEmpty()) {
-                setAuthenticationContext(apiKey, request);
-            } else {
-                // No API key means potential org owner signup/login
-                setOrgOwnerContext(request);
+            return TOKEN_ONLY_PATHS.contains(requestURI) || requestURI.startsWith("/api/auth/deletions/")
+                    ? Route.AUTH_TOKEN_ONLY
+                    : Route.AUTH_CALLER;
+        }
+        return Route.API;
+    }
+    
+    private boolean authenticate(Route route, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        switch (route) {
+            case AUTH_CALLER -> {
+                // Set authentication context based on API key presence
+                String apiKey = request.getHeader("apikey");
+                if (apiKey != null && !apiKey.isEmpty()) {
+                    setAuthenticationContext(apiKey, request);
+                } else {
+                    // No API key means potential org owner signup/login
+                    setOrgOwnerContext(request);
+                }
+                return true;
             }
-        } else {
-            // For other endpoints, API key is required
-            if (apiKey == null || apiKey.isEmpty()) {
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.getWriter().write("{\"error\":\"API key is required\"}");
-                return;
+            case API -> {
+                // For other endpoints, API key is required
+                String apiKey = request.getHeader("apikey");
+                if (apiKey == null || apiKey.isEmpty()) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    response.getWriter().write("{\"error\":\"API key is required\"}");
+                    return false;
+                }
+                
+                if (!setAuthenticationContext(apiKey, request)) {
+                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                    response.getWriter().write("{\"error\":\"Invalid API key\"}");
+                    return false;
+                }
+                return true;
             }
-            
-            if (!setAuthenticationContext(apiKey, request)) {
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.getWriter().write("{\"error\":\"Invalid API key\"}");
-                return;
+            default -> {
+                return true;
             }
         }
-        
-        filterChain.doFilter(request, response);
     }
     
     private boolean setAuthenticationContext(String apiKey, HttpServletRequest request) {
+        ApiKeyPrincipal principal = principalCache.get(apiKey);
+        if (principal == null) {
+            principal = principalLoads.load(apiKey, () -> load(apiKey));
+            if (principal == null) {
+                return false;
+            }
+        }
+        SecurityContextHolder.getContext().setAuthentication(new ApiKeyAuthenticationToken(principal, request.getRemoteAddr()));
+        return true;
+    }
+    
+    // Caches before the in-flight load completes, so no request slips between the two and queries again
+    private ApiKeyPrincipal load(String apiKey) {
+        long epoch = principalCache.epoch();
+        ApiKeyPrincipal principal = resolve(apiKey);
+        if (principal != null) {
+            principalCache.put(principal, epoch);
+        }
+        return principal;
+    }
+    
+    private ApiKeyPrincipal resolve(String apiKey) {
         try {
             // Check if it's an organization owner API key
             if (apiKey.startsWith("org_")) {
-                return organizationRepository.findByOrgOwnerApiKey(apiKey)
-                        .map(org -> {
-                            ApiKeyAuthenticationToken authentication = 
-                                new ApiKeyAuthenticationToken(
-                                    apiKey, 
-                                    "ORG_OWNER", 
-                                    org.getId().toString(),
-                                    null,
-                                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_ORG_OWNER"))
-                                );
-                            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                            SecurityContextHolder.getContext().setAuthentication(authentication);
-                            return true;
-                        })
-                        .orElse(false);
+                return apiKeyStore.findOrganizationId(apiKey)
+                        .map(organizationId -> ApiKeyPrincipal.orgOwner(apiKey, organizationId))
+                        .orElse(null);
             }
             
             // Check if it's a client app API key
             if (apiKey.startsWith("app_")) {
-                return clientAppRepository.findByClientAppApiKey(apiKey)
-                        .map(clientApp -> {
-                            ApiKeyAuthenticationToken authentication = 
-                                new ApiKeyAuthenticationToken(
-                                    apiKey, 
-                                    "CLIENT_APP", 
-                                    clientApp.getOrganization().getId().toString(),
-                                    clientApp.getId().toString(),
-                                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_CLIENT_APP"))
-                                );
-                            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                            SecurityContextHolder.getContext().setAuthentication(authentication);
-                            return true;
-                        })
-                        .orElse(false);
+                return apiKeyStore.findClientApp(apiKey)
+                        .map(clientApp -> ApiKeyPrincipal.clientApp(apiKey, clientApp.organizationId(), clientApp.id()))
+                        .orElse(null);
             }
             
-            return false;
+            return null;
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
     
     private void setOrgOwnerContext(HttpServletRequest request) {
         // Set a special authentication token for potential org owner operations
-        ApiKeyAuthenticationToken authentication = 
-            new ApiKeyAuthenticationToken(
-                null, 
-                "POTENTIAL_ORG_OWNER", 
-                null,
-                null,
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_POTENTIAL_ORG_OWNER"))
-            );
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+        SecurityContextHolder.getContext().setAuthentication(
+                new ApiKeyAuthenticationToken(ApiKeyPrincipal.POTENTIAL_ORG_OWNER, request.getRemoteAddr()));
     }
-}
\ No newline at end of file
+}
@@ -2,52 +2,94 @@ package com.devang.authentication.security;
 
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
 
 import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
 
+/**
+ * Per-request authentication for an API key. All identity lives in the shared, interned
+ * {@link ApiKeyPrincipal}; the token itself only adds the client address, and the details object
+ * is built from it the first time somebody asks.
+ */
 public class ApiKeyAuthenticationToken extends AbstractAuthenticationToken {
     
-    private final String apiKey;
-    private final String userType;
-    private final String organizationId;
-    private final String clientAppId;
-    
-    public ApiKeyAuthenticationToken(String apiKey, 
-                                   String userType, 
-                                   String organizationId, 
-                                   String clientAppId,
-                                   Collection<? extends GrantedAuthority> authorities) {
-        super(authorities);
-        this.apiKey = apiKey;
-        this.userType = userType;
-        this.organizationId = organizationId;
-        this.clientAppId = clientAppId;
+    private final ApiKeyPrincipal principal;
+    private final String remoteAddress;
+    
+    public ApiKeyAuthenticationToken(ApiKeyPrincipal principal, String remoteAddress) {
+        // Authorities come from the principal, so the parent does not copy a list per request
+        super(null);
+        this.principal = principal;
+        this.remoteAddress = remoteAddress;
         setAuthenticated(true);
     }
     
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return principal.getUserType().getAuthorities();
+    }
+    
+    @Override
+    public Object getDetails() {
+        Object details = super.getDetails();
+        if (details == null && remoteAddress != null) {
+            // Sessions are stateless, so there is never a session id to record
+            details = new WebAuthenticationDetails(remoteAddress, null);
+            setDetails(details);
+        }
+        return details;
+    }
+    
     @Override
     public Object getCredentials() {
-        return apiKey;
+        return principal.getApiKey();
     }
     
     @Override
     public Object getPrincipal() {
-        return apiKey;
+        return principal.getApiKey();
     }
     
     public String getApiKey() {
-        return apiKey;
+        return principal.getApiKey();
     }
     
     public String getUserType() {
-        return userType;
+        return principal.getUserType().name();
     }
     
     public String getOrganizationId() {
-        return organizationId;
+        UUID organizationId = principal.getOrganizationId();
+        return organizationId != null ? organizationId.toString() : null;
     }
     
     public String getClientAppId() {
-        return clientAppId;
+        UUID clientAppId = principal.getClientAppId();
+        return clientAppId != null ? clientAppId.toString() : null;
+    }
+    
+    /**
+     * Ownership check without materializing the organization id.
+     */
+    public boolean belongsToOrganization(UUID organizationId) {
+        return principal.belongsToOrganization(organizationId);
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ApiKeyAuthenticationToken other)) {
+            return false;
+        }
+        return principal.getUserType() == other.principal.getUserType()
+                && Objects.equals(principal.getApiKey(), other.principal.getApiKey())
+                && Objects.equals(remoteAddress, other.remoteAddress)
+                && isAuthenticated() == other.isAuthenticated();
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(principal.getUserType(), principal.getApiKey(), remoteAddress, isAuthenticated());
     }
-}
\ No newline at end of file
+}
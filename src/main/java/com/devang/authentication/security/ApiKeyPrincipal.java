@@ -0,0 +1,92 @@
+package com.devang.authentication.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable identity behind an API key, interned per key by {@link ApiKeyPrincipalCache}. The
+ * organization and client app ids are kept as raw UUID bits and only turned into objects when a
+ * caller asks for them; authorities are shared per user type.
+ */
+public final class ApiKeyPrincipal {
+
+    public enum UserType {
+        ORG_OWNER("ROLE_ORG_OWNER"),
+        CLIENT_APP("ROLE_CLIENT_APP"),
+        POTENTIAL_ORG_OWNER("ROLE_POTENTIAL_ORG_OWNER");
+
+        private final List<GrantedAuthority> authorities;
+
+        UserType(String role) {
+            this.authorities = List.of(new SimpleGrantedAuthority(role));
+        }
+
+        public List<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+    }
+
+    // Requests on /api/auth/ without an API key (org owner signup and login)
+    public static final ApiKeyPrincipal POTENTIAL_ORG_OWNER =
+            new ApiKeyPrincipal(null, UserType.POTENTIAL_ORG_OWNER, 0, 0, 0, 0);
+
+    private final String apiKey;
+    private final UserType userType;
+    private final long organizationMsb;
+    private final long organizationLsb;
+    private final long clientAppMsb;
+    private final long clientAppLsb;
+
+    private ApiKeyPrincipal(String apiKey, UserType userType,
+                            long organizationMsb, long organizationLsb,
+                            long clientAppMsb, long clientAppLsb) {
+        this.apiKey = apiKey;
+        this.userType = userType;
+        this.organizationMsb = organizationMsb;
+        this.organizationLsb = organizationLsb;
+        this.clientAppMsb = clientAppMsb;
+        this.clientAppLsb = clientAppLsb;
+    }
+
+    public static ApiKeyPrincipal orgOwner(String apiKey, UUID organizationId) {
+        return new ApiKeyPrincipal(apiKey, UserType.ORG_OWNER,
+                organizationId.getMostSignificantBits(), organizationId.getLeastSignificantBits(), 0, 0);
+    }
+
+    public static ApiKeyPrincipal clientApp(String apiKey, UUID organizationId, UUID clientAppId) {
+        return new ApiKeyPrincipal(apiKey, UserType.CLIENT_APP,
+                organizationId.getMostSignificantBits(), organizationId.getLeastSignificantBits(),
+                clientAppId.getMostSignificantBits(), clientAppId.getLeastSignificantBits());
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public UserType getUserType() {
+        return userType;
+    }
+
+    public UUID getOrganizationId() {
+        return userType == UserType.POTENTIAL_ORG_OWNER ? null : new UUID(organizationMsb, organizationLsb);
+    }
+
+    public UUID getClientAppId() {
+        return userType == UserType.CLIENT_APP ? new UUID(clientAppMsb, clientAppLsb) : null;
+    }
+
+    public boolean belongsToOrganization(UUID organizationId) {
+        return userType != UserType.POTENTIAL_ORG_OWNER
+                && organizationId.getMostSignificantBits() == organizationMsb
+                && organizationId.getLeastSignificantBits() == organizationLsb;
+    }
+
+    public boolean isClientApp(UUID clientAppId) {
+        return userType == UserType.CLIENT_APP
+                && clientAppId.getMostSignificantBits() == clientAppMsb
+                && clientAppId.getLeastSignificantBits() == clientAppLsb;
+    }
+}
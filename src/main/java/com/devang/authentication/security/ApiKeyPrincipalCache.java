@@ -0,0 +1,128 @@
+package com.devang.authentication.security;
+
+import com.devang.authentication.config.ApiKeyCacheProperties;
+import com.devang.authentication.entity.DeletionJob;
+import com.devang.authentication.repository.DeletionJobRepository;
+import com.devang.authentication.service.BoundedCache;
+import com.devang.authentication.store.ApiKeyStore;
+import com.devang.authentication.store.MembershipStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolved API keys, so authenticated requests skip the organization or client app lookup. Only
+ * valid keys are cached. Disabling a key evicts it here right away; other instances see the
+ * deletion within api-key-cache.revocation-poll-interval and evict it too. Every eviction bumps an
+ * epoch, and a lookup that started before it is not cached, so a key read just before its
+ * deletion committed cannot be put back. Evictions are passed on to the lookup stores, whose
+ * in-memory engines index the same keys and the memberships of deleted apps.
+ */
+@Component
+public class ApiKeyPrincipalCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ApiKeyPrincipalCache.class);
+
+    @Autowired
+    private ApiKeyCacheProperties properties;
+
+    @Autowired
+    private DeletionJobRepository deletionJobRepository;
+
+    @Autowired
+    private ApiKeyStore apiKeyStore;
+
+    @Autowired
+    private MembershipStore membershipStore;
+
+    private final BoundedCache<String, Entry> principals = new BoundedCache<>(() -> properties.getMaxSize());
+    private final AtomicLong epoch = new AtomicLong();
+
+    // Deletions already evicted by the revocation poll, so each is only evicted once
+    private Set<UUID> revokedOrganizations = Set.of();
+    private Set<UUID> revokedClientApps = Set.of();
+
+    public ApiKeyPrincipal get(String apiKey) {
+        Entry entry = principals.get(apiKey);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.expiresAt()) {
+            principals.remove(apiKey, entry);
+            return null;
+        }
+        return entry.principal();
+    }
+
+    // Taken before looking a key up and handed to put, which drops the result if anything was evicted since
+    public long epoch() {
+        return epoch.get();
+    }
+
+    public void put(ApiKeyPrincipal principal, long loadedAt) {
+        if (epoch.get() != loadedAt) {
+            return;
+        }
+        Entry entry = new Entry(principal, System.currentTimeMillis() + properties.getTtl());
+        principals.put(principal.getApiKey(), entry);
+        // An eviction that ran between the check and the put may have missed this entry
+        if (epoch.get() != loadedAt) {
+            principals.remove(principal.getApiKey(), entry);
+        }
+    }
+
+    // Also drops the keys of the organization's client apps
+    public void evictOrganization(UUID organizationId) {
+        epoch.incrementAndGet();
+        principals.removeIf(entry -> entry.principal().belongsToOrganization(organizationId));
+        apiKeyStore.evictOrganization(organizationId);
+        membershipStore.evictOrganization(organizationId);
+    }
+
+    public void evictClientApp(UUID clientAppId) {
+        epoch.incrementAndGet();
+        principals.removeIf(entry -> entry.principal().isClientApp(clientAppId));
+        apiKeyStore.evictClientApp(clientAppId);
+        membershipStore.evictClientApp(clientAppId);
+    }
+
+    /**
+     * Evicts keys deleted on any instance, found through their deletion jobs. Jobs older than twice
+     * the TTL are left out, as nothing cached before them can still be live.
+     */
+    @Scheduled(fixedDelayString = "${api-key-cache.revocation-poll-interval:1000}")
+    public synchronized void pollRevocations() {
+        LocalDateTime since = LocalDateTime.now().minusNanos(properties.getTtl() * 2_000_000);
+        try {
+            Set<UUID> organizations = new HashSet<>(deletionJobRepository.findTargetIdsCreatedSince(
+                    DeletionJob.TargetType.ORGANIZATION, since));
+            Set<UUID> clientApps = new HashSet<>(deletionJobRepository.findTargetIdsCreatedSince(
+                    DeletionJob.TargetType.CLIENT_APP, since));
+            for (UUID organizationId : organizations) {
+                if (!revokedOrganizations.contains(organizationId)) {
+                    evictOrganization(organizationId);
+                }
+            }
+            for (UUID clientAppId : clientApps) {
+                if (!revokedClientApps.contains(clientAppId)) {
+                    evictClientApp(clientAppId);
+                }
+            }
+            revokedOrganizations = organizations;
+            revokedClientApps = clientApps;
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll for deleted API keys: {}", e.getMessage());
+        }
+    }
+
+    private record Entry(ApiKeyPrincipal principal, long expiresAt) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.AuthEventProperties;
+import com.devang.authentication.dto.response.AuthEventResponse;
+import com.devang.authentication.entity.AuthEvent;
+import com.devang.authentication.repository.AuthEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Authentication event log. Publishing only offers the event to a lock-free ring buffer; a single
+ * background writer drains it and inserts the rows in JDBC batches. When the writer falls behind
+ * the buffer fills up and events are dropped according to auth-events.drop-policy, so a slow
+ * database never adds latency to logins. Drops are counted in auth.events.dropped.
+ */
+@Service
+public class AuthEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthEventService.class);
+
+    private static final String INSERT_SQL = "INSERT INTO auth_events " +
+            "(id, type, organization_id, client_app_id, subject_id, username, client_ip, detail, occurred_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final AuthEventProperties properties;
+    private final AuthEventRepository authEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EventRingBuffer<AuthEvent> buffer;
+    private final Counter published;
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedEvicted;
+    private final Counter droppedWriteFailed;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuthEventService(AuthEventProperties properties,
+                            AuthEventRepository authEventRepository,
+                            JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.authEventRepository = authEventRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.buffer = new EventRingBuffer<>(properties.getBufferSize());
+        this.published = Counter.builder("auth.events.published").register(meterRegistry);
+        this.written = Counter.builder("auth.events.written").register(meterRegistry);
+        this.droppedFull = Counter.builder("auth.events.dropped").tag("reason", "buffer_full").register(meterRegistry);
+        this.droppedEvicted = Counter.builder("auth.events.dropped").tag("reason", "evicted").register(meterRegistry);
+        this.droppedWriteFailed = Counter.builder("auth.events.dropped").tag("reason", "write_failed").register(meterRegistry);
+        Gauge.builder("auth.events.buffer.size", buffer, EventRingBuffer::size)
+                .description("Authentication events waiting for the writer")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "auth-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        // The writer drains whatever is left before exiting
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public void publish(AuthEvent.Type type, UUID organizationId, UUID clientAppId, UUID subjectId,
+                        String username, String clientIp, String detail) {
+        if (!running) {
+            return;
+        }
+        AuthEvent event = AuthEvent.builder()
+                .id(UUID.randomUUID())
+                .type(type)
+                .organizationId(organizationId)
+                .clientAppId(clientAppId)
+                .subjectId(subjectId)
+                .username(username)
+                .clientIp(clientIp)
+                .detail(detail)
+                .occurredAt(LocalDateTime.now())
+                .build();
+
+        if (buffer.offer(event)) {
+            published.increment();
+            return;
+        }
+        if (properties.getDropPolicy() == AuthEventProperties.DropPolicy.DROP_OLDEST && buffer.poll() != null) {
+            droppedEvicted.increment();
+            if (buffer.offer(event)) {
+                published.increment();
+                return;
+            }
+        }
+        droppedFull.increment();
+    }
+
+    /**
+     * Publishes once the surrounding transaction commits, so rolled back operations are not logged
+     * as successes.
+     */
+    public void publishAfterCommit(AuthEvent.Type type, UUID organizationId, UUID clientAppId, UUID subjectId,
+                                   String username, String clientIp, String detail) {
+        ProvisioningService.afterCommit(() ->
+                publish(type, organizationId, clientAppId, subjectId, username, clientIp, detail));
+    }
+
+    /**
+     * Most recent events of an organization, newest first. Events still in the buffer are not
+     * visible yet.
+     */
+    @Transactional(readOnly = true)
+    public List<AuthEventResponse> recentEvents(UUID organizationId, AuthEvent.Type type, LocalDateTime before, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, properties.getMaxQueryLimit())));
+        LocalDateTime upperBound = before != null ? before : LocalDateTime.now().plusSeconds(1);
+        List<AuthEvent> events = type != null
+                ? authEventRepository.findByOrganizationIdAndTypeAndOccurredAtBeforeOrderByOccurredAtDesc(organizationId, type, upperBound, page)
+                : authEventRepository.findByOrganizationIdAndOccurredAtBeforeOrderByOccurredAtDesc(organizationId, upperBound, page);
+
+        return events.stream()
+                .map(event -> AuthEventResponse.builder()
+                        .id(event.getId())
+                        .type(event.getType().name())
+                        .clientAppId(event.getClientAppId())
+                        .subjectId(event.getSubjectId())
+                        .username(event.getUsername())
+                        .clientIp(event.getClientIp())
+                        .detail(event.getDetail())
+                        .occurredAt(event.getOccurredAt())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // Hourly, in chunks so a large backlog never holds one long transaction
+    @Scheduled(initialDelay = 60000, fixedDelay = 3600000)
+    public void purgeExpired() {
+        if (properties.getRetentionDays() <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(properties.getRetentionDays());
+        PageRequest page = PageRequest.of(0, properties.getBatchSize());
+        long total = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<UUID> ids = authEventRepository.findIdsOlderThan(cutoff, page);
+                authEventRepository.deleteAllByIdInBatch(ids);
+                return ids.size();
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            total += deleted;
+        }
+        if (total > 0) {
+            log.info("Purged {} authentication events older than {}", total, cutoff);
+        }
+    }
+
+    private void writeLoop() {
+        List<AuthEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (true) {
+            AuthEvent event;
+            while (batch.size() < properties.getBatchSize() && (event = buffer.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval()));
+                continue;
+            }
+            boolean ok = write(batch);
+            batch.clear();
+            if (!ok) {
+                // Back off instead of spinning against a failing database; the buffer absorbs or drops meanwhile
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(properties.getFlushInterval()));
+            }
+        }
+    }
+
+    private boolean write(List<AuthEvent> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setObject(1, event.getId());
+                ps.setString(2, event.getType().name());
+                ps.setObject(3, event.getOrganizationId());
+                ps.setObject(4, event.getClientAppId());
+                ps.setObject(5, event.getSubjectId());
+                ps.setString(6, event.getUsername());
+                ps.setString(7, event.getClientIp());
+                ps.setString(8, event.getDetail());
+                ps.setTimestamp(9, Timestamp.valueOf(event.getOccurredAt()));
+            });
+            written.increment(batch.size());
+            return true;
+        } catch (Exception e) {
+            droppedWriteFailed.increment(batch.size());
+            log.warn("Writing {} authentication events failed: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+}
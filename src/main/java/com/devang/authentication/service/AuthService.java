@@ -1,24 +1,39 @@
 package com.devang.authentication.service;
 
+import com.devang.authentication.config.JwtProperties;
 import com.devang.authentication.dto.request.LoginRequest;
 import com.devang.authentication.dto.request.SignupRequest;
 import com.devang.authentication.dto.response.AuthResponse;
+import com.devang.authentication.dto.response.SessionResponse;
 import com.devang.authentication.entity.*;
+import com.devang.authentication.exception.AuthException;
 import com.devang.authentication.repository.*;
+import com.devang.authentication.store.ApiKeyStore;
+import com.devang.authentication.store.MembershipStore;
+import com.devang.authentication.store.RefreshTokenStore;
+import com.devang.authentication.store.StoredRefreshToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class AuthService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+
     @Autowired
     private UserRepository userRepository;
 
@@ -32,25 +47,68 @@ public class AuthService {
     private ClientAppRepository clientAppRepository;
 
     @Autowired
-    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private ApiKeyStore apiKeyStore;
+
+    @Autowired
+    private MembershipStore membershipStore;
 
     @Autowired
     private JwtUtilService jwtUtilService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    @Autowired
+    private LoginThrottleService loginThrottleService;
+
+    @Autowired
+    private AuthSessionRepository authSessionRepository;
+
+    @Autowired
+    private SsoMappingCache ssoMappingCache;
+
+    @Autowired
+    private ProvisioningService provisioningService;
+
+    @Autowired
+    private IdentityRepository identityRepository;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private AuthEventService authEventService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Concurrent lookups of one API key or user share a single query; see findClientApp and findUser
+    private SingleFlight<String, Optional<ClientAppSnapshot>> clientAppLoads;
+    private SingleFlight<UUID, Optional<MemberSnapshot>> userLoads;
+
+    @PostConstruct
+    void initLookups() {
+        clientAppLoads = new SingleFlight<>("client_app", meterRegistry);
+        userLoads = new SingleFlight<>("user", meterRegistry);
+    }
 
     @Transactional
     public AuthResponse signup(SignupRequest request, String apiKey) {
         // If apiKey is null -> org owner signup
         if (apiKey == null) {
             if (orgOwnerRepository.existsByUsername(request.getUsername())) {
-                throw new RuntimeException("Username already exists");
+                throw AuthException.conflict("Username already exists");
             }
 
             OrgOwner owner = new OrgOwner();
             owner.setUsername(request.getUsername());
-            owner.setPassword(passwordEncoder.encode(request.getPassword()));
+            owner.setPassword(passwordHashingService.encode(request.getPassword()));
             owner.setEmail(request.getEmail());
             owner.setFirstName(request.getFirstName());
             owner.setLastName(request.getLastName());
@@ -65,7 +123,7 @@ public class AuthService {
 
             // Ensure organization name is unique
             if (organizationRepository.existsByName(orgName)) {
-                throw new RuntimeException("Organization name already exists");
+                throw AuthException.conflict("Organization name already exists");
             }
 
             if (orgDesc == null) {
@@ -80,21 +138,11 @@ public class AuthService {
             owner.setOrganization(org);
             owner = orgOwnerRepository.save(owner);
 
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("userId", owner.getId());
-            claims.put("username", owner.getUsername());
-            claims.put("userType", "ORG_OWNER");
-            claims.put("organizationId", org.getId());
-            claims.put("organizationName", org.getName());
+            Map<String, Object> claims = TokenClaims.forOrgOwner(jwtProperties.getClaimProfile(), owner, org);
 
-            String access = jwtUtilService.generateAccessToken(claims);
-            String refresh = jwtUtilService.generateRefreshToken();
-
-            RefreshToken rt = new RefreshToken();
-            rt.setToken(refresh);
-            rt.setUser(null);
-            rt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-            refreshTokenRepository.save(rt);
+            String access = issueAccessToken(claims);
+            String refresh = issueRefreshToken(openSession(null, owner));
+            publishEvent(AuthEvent.Type.SIGNUP, null, owner, null);
 
             return AuthResponse.builder()
                     .accessToken(access)
@@ -107,87 +155,99 @@ public class AuthService {
 
         // If apiKey starts with app_ -> client app user signup
         if (apiKey.startsWith("app_")) {
-            ClientApp clientApp = clientAppRepository.findByClientAppApiKey(apiKey)
-                    .orElseThrow(() -> new RuntimeException("Invalid client app API key"));
+            ClientAppSnapshot app = findClientApp(apiKey)
+                    .orElseThrow(() -> AuthException.unauthorized("Invalid client app API key"));
+            ClientApp clientApp = clientAppRepository.getReferenceById(app.id());
+            Organization organization = organizationRepository.getReferenceById(app.organizationId());
+
+            if (membershipStore.exists(request.getUsername(), app.id())) {
+                throw AuthException.conflict("Username already exists for this client app");
+            }
 
-            if (userRepository.existsByUsernameAndClientApp(request.getUsername(), clientApp)) {
-                throw new RuntimeException("Username already exists for this client app");
+            // A username already known to the organization joins this app with its existing identity,
+            // but only when the caller proves it owns that identity
+            Identity identity = identityRepository
+                    .findByOrganizationAndUsername(organization, request.getUsername())
+                    .orElse(null);
+            if (identity == null) {
+                identity = new Identity();
+                identity.setOrganization(organization);
+                identity.setUsername(request.getUsername());
+                identity.setPassword(passwordHashingService.encode(request.getPassword()));
+                identity.setEmail(request.getEmail());
+                identity.setFirstName(request.getFirstName());
+                identity.setLastName(request.getLastName());
+                identity.setUserMetadata(request.getUser_metadata());
+                identity = identityRepository.save(identity);
+                statsService.identityCreated(app.organizationId());
+            } else if (!passwordHashingService.matches(request.getPassword(), identity.getPassword())) {
+                throw AuthException.conflict("Username already exists in this organization");
             }
 
             User user = new User();
             user.setUsername(request.getUsername());
-            user.setPassword(passwordEncoder.encode(request.getPassword()));
-            user.setEmail(request.getEmail());
-            user.setFirstName(request.getFirstName());
-            user.setLastName(request.getLastName());
-            user.setUserMetadata(request.getUser_metadata());
-            user.setOrganization(clientApp.getOrganization());
+            user.setIdentity(identity);
+            user.setOrganization(organization);
             user.setClientApp(clientApp);
 
             user = userRepository.save(user);
-
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("userId", user.getId());
-            claims.put("username", user.getUsername());
-            claims.put("userType", "CLIENT_USER");
-            claims.put("organizationId", clientApp.getOrganization().getId());
-            claims.put("organizationName", clientApp.getOrganization().getName());
-            claims.put("clientAppId", clientApp.getId());
-            if (user.getUserMetadata() != null) {
-                claims.put("user_metadata", user.getUserMetadata());
+            membershipStore.saved(user);
+            statsService.membershipsAdded(app.organizationId(), app.id(), 1);
+            if (app.eagerProvisioning()) {
+                UUID userId = user.getId();
+                ProvisioningService.afterCommit(() -> provisioningService.provisionUserAcrossOrganization(userId));
             }
 
-            String access = jwtUtilService.generateAccessToken(claims);
-            String refresh = jwtUtilService.generateRefreshToken();
+            Map<String, Object> claims = TokenClaims.forClientUser(jwtProperties.getClaimProfile(),
+                    user.getId(), user.getUsername(), identity.getUserMetadata(), app);
 
-            RefreshToken rt = new RefreshToken();
-            rt.setToken(refresh);
-            rt.setUser(user);
-            rt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-            refreshTokenRepository.save(rt);
+            String access = issueAccessToken(claims);
+            String refresh = issueRefreshToken(openSession(user, null));
+            publishEvent(AuthEvent.Type.SIGNUP, user, null, null);
 
             return AuthResponse.builder()
                     .accessToken(access)
                     .refreshToken(refresh)
                     .expiresIn(jwtUtilService.getAccessExpirationSeconds())
             .userClaims(claims)
-            .clientAppApiKey(clientApp.getClientAppApiKey())
+            .clientAppApiKey(app.apiKey())
                     .build();
         }
 
-        throw new RuntimeException("Unsupported API key type for signup");
+        throw AuthException.badRequest("Unsupported API key type for signup");
     }
 
-    @Transactional(readOnly = true)
-    public AuthResponse login(LoginRequest request, String apiKey) {
+    @Transactional
+    public AuthResponse login(LoginRequest request, String apiKey, String clientIp) {
+        // The caller has already passed LoginThrottleService.checkAllowed, outside this transaction
+        String throttleKey = LoginThrottleService.usernameKey(apiKey, request.getUsername());
+
         // org owner login (no API key) or client app user login
         if (apiKey == null) {
-            OrgOwner owner = orgOwnerRepository.findByUsername(request.getUsername())
-                    .orElseThrow(() -> new RuntimeException("Invalid credentials"));
-
-            if (!passwordEncoder.matches(request.getPassword(), owner.getPassword())) {
-                throw new RuntimeException("Invalid credentials");
+            OrgOwner owner = orgOwnerRepository.findByUsername(request.getUsername()).orElse(null);
+
+            // Unknown usernames still pay for a hash so they cannot be told apart by timing
+            boolean matches = owner != null
+                    ? passwordHashingService.matches(request.getPassword(), owner.getPassword())
+                    : passwordHashingService.matchesDummy(request.getPassword());
+            if (!matches) {
+                UUID organizationId = owner != null && owner.getOrganization() != null ? owner.getOrganization().getId() : null;
+                throw invalidCredentials(throttleKey, clientIp, organizationId, null,
+                        owner != null ? owner.getId() : null, request.getUsername());
             }
 
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("userId", owner.getId());
-            claims.put("username", owner.getUsername());
-            claims.put("userType", "ORG_OWNER");
-
             Organization org = owner.getOrganization();
-            if (org != null) {
-                claims.put("organizationId", org.getId());
-                claims.put("organizationName", org.getName());
+            if (org != null && org.getDeletedAt() != null) {
+                throw AuthException.unauthorized("Organization has been deleted");
             }
+            Map<String, Object> claims = TokenClaims.forOrgOwner(jwtProperties.getClaimProfile(), owner, org);
 
-            String access = jwtUtilService.generateAccessToken(claims);
-            String refresh = jwtUtilService.generateRefreshToken();
-
-            RefreshToken rt = new RefreshToken();
-            rt.setToken(refresh);
-            rt.setUser(null);
-            rt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-            refreshTokenRepository.save(rt);
+            String access = issueAccessToken(claims);
+            String refresh = issueRefreshToken(openSession(null, owner));
+            if (org != null) {
+                statsService.loginSucceeded(org.getId(), null);
+            }
+            publishEvent(AuthEvent.Type.LOGIN_SUCCESS, null, owner, clientIp);
 
             return AuthResponse.builder()
                     .accessToken(access)
@@ -199,83 +259,105 @@ public class AuthService {
         }
 
         if (apiKey.startsWith("app_")) {
-            ClientApp clientApp = clientAppRepository.findByClientAppApiKey(apiKey)
-                    .orElseThrow(() -> new RuntimeException("Invalid client app API key"));
+            ClientAppSnapshot app = findClientApp(apiKey)
+                    .orElseThrow(() -> AuthException.unauthorized("Invalid client app API key"));
 
-            User user = userRepository.findByUsernameAndClientApp(request.getUsername(), clientApp)
-                    .orElseThrow(() -> new RuntimeException("Invalid credentials"));
+            User user = membershipStore.findWithIdentity(request.getUsername(), app.id()).orElse(null);
 
-            if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
-                throw new RuntimeException("Invalid credentials");
+            boolean matches = user != null
+                    ? passwordHashingService.matches(request.getPassword(), user.getIdentity().getPassword())
+                    : passwordHashingService.matchesDummy(request.getPassword());
+            if (!matches) {
+                throw invalidCredentials(throttleKey, clientIp, app.organizationId(), app.id(),
+                        user != null ? user.getId() : null, request.getUsername());
             }
 
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("userId", user.getId());
-            claims.put("username", user.getUsername());
-            claims.put("userType", "CLIENT_USER");
-            claims.put("organizationId", clientApp.getOrganization().getId());
-            claims.put("organizationName", clientApp.getOrganization().getName());
-            claims.put("clientAppId", clientApp.getId());
-            if (user.getUserMetadata() != null) {
-                claims.put("user_metadata", user.getUserMetadata());
-            }
-
-            String access = jwtUtilService.generateAccessToken(claims);
-            String refresh = jwtUtilService.generateRefreshToken();
+            Map<String, Object> claims = TokenClaims.forClientUser(jwtProperties.getClaimProfile(),
+                    user.getId(), user.getUsername(), user.getIdentity().getUserMetadata(), app);
 
-            RefreshToken rt = new RefreshToken();
-            rt.setToken(refresh);
-            rt.setUser(user);
-            rt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-            refreshTokenRepository.save(rt);
+            String access = issueAccessToken(claims);
+            String refresh = issueRefreshToken(openSession(user, null));
+            statsService.loginSucceeded(app.organizationId(), app.id());
+            publishEvent(AuthEvent.Type.LOGIN_SUCCESS, user, null, clientIp);
 
             return AuthResponse.builder()
                     .accessToken(access)
                     .refreshToken(refresh)
                     .expiresIn(jwtUtilService.getAccessExpirationSeconds())
                 .userClaims(claims)
-                .clientAppApiKey(clientApp.getClientAppApiKey())
+                .clientAppApiKey(app.apiKey())
                     .build();
         }
 
-        throw new RuntimeException("Unsupported API key type for login");
+        throw AuthException.badRequest("Unsupported API key type for login");
     }
 
     @Transactional
     public AuthResponse refresh(String refreshToken) {
-        RefreshToken rt = refreshTokenRepository.findByToken(refreshToken)
-                .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
-
-        if (rt.isExpired() || rt.isRevoked()) {
-            throw new RuntimeException("Refresh token expired or revoked");
+        StoredRefreshToken rt = refreshTokenStore.findByToken(refreshToken)
+                .orElseThrow(() -> AuthException.unauthorized("Invalid refresh token"));
+        User tokenUser = tokenUser(rt);
+        OrgOwner tokenOwner = tokenOwner(rt);
+
+        AuthSession session = tokenSession(rt);
+        if (rt.revoked()) {
+            // A rotated-out token being presented again means the family leaked; end the session
+            if (session != null && !session.isRevoked()) {
+                authSessionRepository.revokeSession(session.getId());
+                log.warn("Refresh token reuse detected, revoking session {}", session.getId());
+                // Published right away: the surrounding transaction rolls back with the exception below
+                if (tokenUser != null) {
+                    User user = tokenUser;
+                    authEventService.publish(AuthEvent.Type.REFRESH_REUSE, user.getOrganization().getId(),
+                            user.getClientApp().getId(), user.getId(), user.getUsername(), null, "session " + session.getId());
+                } else if (tokenOwner != null) {
+                    OrgOwner owner = tokenOwner;
+                    authEventService.publish(AuthEvent.Type.REFRESH_REUSE,
+                            owner.getOrganization() != null ? owner.getOrganization().getId() : null,
+                            null, owner.getId(), owner.getUsername(), null, "session " + session.getId());
+                }
+            }
+            throw AuthException.unauthorized("Refresh token expired or revoked");
+        }
+        if (rt.isExpired()) {
+            throw AuthException.unauthorized("Refresh token expired or revoked");
+        }
+        if (session != null && !session.isActive()) {
+            throw AuthException.unauthorized("Session has been revoked");
         }
 
         // Build claims from user or owner
-        Map<String, Object> claims = new HashMap<>();
-        if (rt.getUser() != null) {
-            User user = rt.getUser();
-            claims.put("userId", user.getId());
-            claims.put("username", user.getUsername());
-            claims.put("userType", "CLIENT_USER");
-            claims.put("organizationId", user.getOrganization().getId());
-            claims.put("organizationName", user.getOrganization().getName());
-            claims.put("clientAppId", user.getClientApp().getId());
-            if (user.getUserMetadata() != null) {
-                claims.put("user_metadata", user.getUserMetadata());
+        Map<String, Object> claims;
+        if (tokenUser != null) {
+            User user = tokenUser;
+            if (user.getClientApp().getDeletedAt() != null) {
+                throw AuthException.unauthorized("Client app has been deleted");
             }
+            claims = TokenClaims.forClientUser(jwtProperties.getClaimProfile(), user, user.getClientApp());
+        } else if (tokenOwner != null) {
+            OrgOwner owner = tokenOwner;
+            if (owner.getOrganization() != null && owner.getOrganization().getDeletedAt() != null) {
+                throw AuthException.unauthorized("Organization has been deleted");
+            }
+            claims = TokenClaims.forOrgOwner(jwtProperties.getClaimProfile(), owner, owner.getOrganization());
+        } else {
+            // Owner tokens issued before sessions existed cannot be tied back to anyone
+            throw AuthException.unauthorized("Refresh token is no longer supported, please log in again");
         }
 
-        String newAccess = jwtUtilService.generateAccessToken(claims);
-        String newRefresh = jwtUtilService.generateRefreshToken();
+        // Revoke old and save new; of concurrent refreshes with the same token only one gets here
+        if (!refreshTokenStore.revoke(refreshToken)) {
+            throw AuthException.unauthorized("Refresh token expired or revoked");
+        }
+
+        String newAccess = issueAccessToken(claims);
 
-        // Revoke old and save new
-        refreshTokenRepository.revokeToken(refreshToken);
+        if (session == null) {
+            session = openSession(tokenUser, null);
+        }
 
-        RefreshToken newRt = new RefreshToken();
-        newRt.setToken(newRefresh);
-        newRt.setUser(rt.getUser());
-        newRt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-        refreshTokenRepository.save(newRt);
+        String newRefresh = issueRefreshToken(session);
+        publishEvent(AuthEvent.Type.REFRESH, tokenUser, tokenOwner, null);
 
         return AuthResponse.builder()
                 .accessToken(newAccess)
@@ -287,7 +369,75 @@ public class AuthService {
 
     @Transactional
     public void logout(String refreshToken) {
-        refreshTokenRepository.revokeToken(refreshToken);
+        refreshTokenStore.findByToken(refreshToken).ifPresent(rt -> {
+            AuthSession session = tokenSession(rt);
+            if (session != null && session.isActive()) {
+                session.setRevoked(true);
+                recordSessionEnded(session);
+            }
+            publishEvent(AuthEvent.Type.LOGOUT, tokenUser(rt), tokenOwner(rt), null);
+        });
+        refreshTokenStore.revoke(refreshToken);
+    }
+
+    /**
+     * Ends every session of the refresh token's owner with a single generation bump instead of
+     * revoking each token. For client app users the counter lives on the shared identity, so this
+     * covers every client app of the organization.
+     */
+    @Transactional
+    public void logoutEverywhere(String refreshToken) {
+        StoredRefreshToken rt = refreshTokenStore.findByToken(refreshToken)
+                .orElseThrow(() -> AuthException.unauthorized("Invalid refresh token"));
+        if (rt.revoked() || rt.isExpired()) {
+            throw AuthException.unauthorized("Refresh token expired or revoked");
+        }
+
+        User user = tokenUser(rt);
+        OrgOwner owner = tokenOwner(rt);
+        if (user != null) {
+            identityRepository.incrementTokenGeneration(user.getIdentity().getId());
+        } else if (owner != null) {
+            orgOwnerRepository.incrementTokenGeneration(owner.getId());
+        } else {
+            throw AuthException.unauthorized("Refresh token is no longer supported, please log in again");
+        }
+        refreshTokenStore.revoke(refreshToken);
+        publishEvent(AuthEvent.Type.LOGOUT_ALL, user, owner, null);
+    }
+
+    /**
+     * Lists the active sessions of the subject of a valid access token.
+     */
+    @Transactional(readOnly = true)
+    public List<SessionResponse> listSessions(String accessToken) {
+        Map<String, Object> claims;
+        try {
+            claims = jwtUtilService.extractClaims(accessToken);
+        } catch (Exception e) {
+            throw AuthException.unauthorized("Invalid or expired access token");
+        }
+
+        UUID subjectId = UUID.fromString(TokenClaims.userId(claims));
+        List<AuthSession> sessions;
+        if (TokenClaims.USER_TYPE_CLIENT_USER.equals(TokenClaims.userType(claims))) {
+            User user = userRepository.findById(subjectId)
+                    .orElseThrow(() -> AuthException.unauthorized("User not found"));
+            sessions = authSessionRepository.findActiveByIdentity(user.getIdentity().getId(), LocalDateTime.now());
+        } else {
+            sessions = authSessionRepository.findActiveByOrgOwner(subjectId, LocalDateTime.now());
+        }
+
+        return sessions.stream()
+                .map(session -> SessionResponse.builder()
+                        .id(session.getId())
+                        .clientAppId(session.getUser() != null ? session.getUser().getClientApp().getId() : null)
+                        .clientAppName(session.getUser() != null ? session.getUser().getClientApp().getName() : null)
+                        .createdAt(session.getCreatedAt())
+                        .lastUsedAt(session.getLastUsedAt())
+                        .expiresAt(session.getExpiresAt())
+                        .build())
+                .collect(Collectors.toList());
     }
 
     /**
@@ -305,89 +455,228 @@ public class AuthService {
         try {
             currentClaims = jwtUtilService.extractClaims(currentAccessToken);
         } catch (Exception e) {
-            throw new RuntimeException("Invalid or expired access token");
+            throw AuthException.unauthorized("Invalid or expired access token");
         }
 
         // Extract information from current token
-        String userType = (String) currentClaims.get("userType");
-        if (!"CLIENT_USER".equals(userType)) {
-            throw new RuntimeException("SSO is only available for client app users");
+        String userType = TokenClaims.userType(currentClaims);
+        if (!TokenClaims.USER_TYPE_CLIENT_USER.equals(userType)) {
+            throw AuthException.forbidden("SSO is only available for client app users");
+        }
+
+        UUID userId = UUID.fromString(TokenClaims.userId(currentClaims));
+        String currentOrgId = TokenClaims.organizationId(currentClaims);
+
+        // Fast path: a previous exchange already resolved the target user
+        MemberSnapshot target = null;
+        UUID mappedUserId = ssoMappingCache.get(userId, targetClientAppApiKey);
+        if (mappedUserId != null) {
+            target = findUser(mappedUserId)
+                    .filter(candidate -> candidate.clientApp().apiKey().equals(targetClientAppApiKey))
+                    .filter(candidate -> candidate.clientApp().organizationId().toString().equals(currentOrgId))
+                    .orElse(null);
+            if (target == null) {
+                ssoMappingCache.evict(userId, targetClientAppApiKey);
+            }
+        }
+
+        if (target == null) {
+            target = resolveTargetUser(userId, currentOrgId, targetClientAppApiKey);
+            ssoMappingCache.put(userId, targetClientAppApiKey, target.id());
         }
+        ClientAppSnapshot targetClientApp = target.clientApp();
 
-        String userId = currentClaims.get("userId").toString();
-        String username = (String) currentClaims.get("username");
-        String currentOrgId = currentClaims.get("organizationId").toString();
+        // Generate new access token for target client app
+        Map<String, Object> newClaims = TokenClaims.forClientUser(jwtProperties.getClaimProfile(),
+                target.id(), target.username(), target.metadata(), targetClientApp);
+
+        String newAccessToken = issueAccessToken(newClaims);
+
+        // The session only needs the user's id, so it references the row instead of loading it
+        AuthSession session = new AuthSession();
+        session.setUser(userRepository.getReferenceById(target.id()));
+        session.setGeneration(target.tokenGeneration());
+        statsService.sessionOpened(targetClientApp.organizationId(), targetClientApp.id());
+        String newRefreshToken = issueRefreshToken(session, target.id(), null,
+                targetClientApp.organizationId(), targetClientApp.id());
+        authEventService.publishAfterCommit(AuthEvent.Type.SSO_EXCHANGE, targetClientApp.organizationId(),
+                targetClientApp.id(), target.id(), target.username(), null, null);
+
+        return AuthResponse.builder()
+                .accessToken(newAccessToken)
+                .refreshToken(newRefreshToken)
+                .expiresIn(jwtUtilService.getAccessExpirationSeconds())
+                .userClaims(newClaims)
+                .clientAppApiKey(targetClientApp.apiKey())
+                .build();
+    }
 
+    private MemberSnapshot resolveTargetUser(UUID userId, String currentOrgId, String targetClientAppApiKey) {
         // Validate target client app exists
-        ClientApp targetClientApp = clientAppRepository.findByClientAppApiKey(targetClientAppApiKey)
-                .orElseThrow(() -> new RuntimeException("Invalid target client app API key"));
+        ClientAppSnapshot targetApp = findClientApp(targetClientAppApiKey)
+                .orElseThrow(() -> AuthException.unauthorized("Invalid target client app API key"));
 
         // Verify both apps belong to the same organization
-        if (!targetClientApp.getOrganization().getId().toString().equals(currentOrgId)) {
-            throw new RuntimeException("Target client app does not belong to the same organization");
+        if (!targetApp.organizationId().toString().equals(currentOrgId)) {
+            throw AuthException.forbidden("Target client app does not belong to the same organization");
         }
 
         // Find the user in the current organization
-        User user = userRepository.findById(UUID.fromString(userId))
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        MemberSnapshot user = findUser(userId)
+                .orElseThrow(() -> AuthException.unauthorized("User not found"));
 
         // Verify user belongs to the same organization
-        if (!user.getOrganization().getId().toString().equals(currentOrgId)) {
-            throw new RuntimeException("User organization mismatch");
+        if (!user.clientApp().organizationId().toString().equals(currentOrgId)) {
+            throw AuthException.forbidden("User organization mismatch");
         }
 
         // Check if user already exists for the target client app
-        Optional<User> existingUserInTargetApp = userRepository.findByUsernameAndClientApp(username, targetClientApp);
-        
-        User targetUser;
+        Optional<User> existingUserInTargetApp = membershipStore.findWithIdentity(user.username(), targetApp.id());
         if (existingUserInTargetApp.isPresent()) {
-            // User already has an account in the target app, use it
-            targetUser = existingUserInTargetApp.get();
-        } else {
-            // Create a new user entry for the target client app (auto-provisioning)
-            targetUser = new User();
-            targetUser.setUsername(user.getUsername());
-            targetUser.setPassword(user.getPassword()); // Same password
-            targetUser.setEmail(user.getEmail());
-            targetUser.setFirstName(user.getFirstName());
-            targetUser.setLastName(user.getLastName());
-            targetUser.setUserMetadata(user.getUserMetadata());
-            targetUser.setOrganization(targetClientApp.getOrganization());
-            targetUser.setClientApp(targetClientApp);
-            
-            targetUser = userRepository.save(targetUser);
+            return MemberSnapshot.of(existingUserInTargetApp.get(), targetApp);
         }
 
-        // Generate new access token for target client app
-        Map<String, Object> newClaims = new HashMap<>();
-        newClaims.put("userId", targetUser.getId());
-        newClaims.put("username", targetUser.getUsername());
-        newClaims.put("userType", "CLIENT_USER");
-        newClaims.put("organizationId", targetClientApp.getOrganization().getId());
-        newClaims.put("organizationName", targetClientApp.getOrganization().getName());
-        newClaims.put("clientAppId", targetClientApp.getId());
-        if (targetUser.getUserMetadata() != null) {
-            newClaims.put("user_metadata", targetUser.getUserMetadata());
+        // Auto-provision a membership of the same identity in the target app. A concurrent
+        // exchange may win the insert; either way the row exists afterwards.
+        int inserted = userRepository.provisionIfAbsent(UUID.randomUUID(), user.id(),
+                targetApp.organizationId(), targetApp.id());
+        statsService.membershipsAdded(targetApp.organizationId(), targetApp.id(), inserted);
+        return membershipStore.findWithIdentity(user.username(), targetApp.id())
+                .map(provisioned -> MemberSnapshot.of(provisioned, targetApp))
+                .orElseThrow(() -> new RuntimeException("Failed to provision user for target client app"));
+    }
+
+    /**
+     * Client app of an API key. When a client app cold-starts, its concurrent requests all miss
+     * together; they wait for the first lookup instead of each querying, and share an immutable
+     * snapshot rather than an entity of the first request's persistence context.
+     */
+    private Optional<ClientAppSnapshot> findClientApp(String apiKey) {
+        return clientAppLoads.load(apiKey, () -> apiKeyStore.findClientApp(apiKey));
+    }
+
+    // Client app user shared the same way by concurrent SSO exchanges
+    private Optional<MemberSnapshot> findUser(UUID userId) {
+        return userLoads.load(userId, () -> userRepository.findWithClientAppById(userId)
+                .map(user -> MemberSnapshot.of(user, ClientAppSnapshot.of(user.getClientApp()))));
+    }
+
+    private AuthSession openSession(User user, OrgOwner owner) {
+        AuthSession session = new AuthSession();
+        session.setUser(user);
+        session.setOrgOwner(owner);
+        session.setGeneration(user != null ? user.getIdentity().getTokenGeneration() : owner.getTokenGeneration());
+        if (user != null) {
+            statsService.sessionOpened(user.getOrganization().getId(), user.getClientApp().getId());
+        } else if (owner.getOrganization() != null) {
+            statsService.sessionOpened(owner.getOrganization().getId(), null);
         }
+        return session;
+    }
 
-        String newAccessToken = jwtUtilService.generateAccessToken(newClaims);
-        String newRefreshToken = jwtUtilService.generateRefreshToken();
+    private void recordSessionEnded(AuthSession session) {
+        if (session.getUser() != null) {
+            User user = session.getUser();
+            statsService.sessionEnded(user.getOrganization().getId(), user.getClientApp().getId());
+        } else if (session.getOrgOwner() != null && session.getOrgOwner().getOrganization() != null) {
+            statsService.sessionEnded(session.getOrgOwner().getOrganization().getId(), null);
+        }
+    }
 
-        // Save refresh token
-        RefreshToken rt = new RefreshToken();
-        rt.setToken(newRefreshToken);
-        rt.setUser(targetUser);
-        rt.setExpiryDate(LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()));
-        refreshTokenRepository.save(rt);
+    private String issueRefreshToken(AuthSession session) {
+        User user = session.getUser();
+        OrgOwner owner = session.getOrgOwner();
+        UUID organizationId = user != null ? user.getOrganization().getId()
+                : owner.getOrganization() != null ? owner.getOrganization().getId() : null;
+        return issueRefreshToken(session,
+                user != null ? user.getId() : null,
+                owner != null ? owner.getId() : null,
+                organizationId,
+                user != null ? user.getClientApp().getId() : null);
+    }
 
-        return AuthResponse.builder()
-                .accessToken(newAccessToken)
-                .refreshToken(newRefreshToken)
-                .expiresIn(jwtUtilService.getAccessExpirationSeconds())
-                .userClaims(newClaims)
-                .clientAppApiKey(targetClientApp.getClientAppApiKey())
-                .build();
+    private String issueRefreshToken(AuthSession session, UUID userId, UUID ownerId, UUID organizationId, UUID clientAppId) {
+        String token = jwtUtilService.generateRefreshToken();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiry = now.plusSeconds(jwtUtilService.getRefreshExpirationSeconds());
+
+        session.setLastUsedAt(now);
+        session.setExpiresAt(expiry);
+        session = authSessionRepository.save(session);
+
+        refreshTokenStore.save(new StoredRefreshToken(token, userId, ownerId, session.getId(), organizationId,
+                clientAppId, expiry, false));
+        return token;
     }
 
-}
+    // Stores only hold ids; the subject and session are loaded where the token is used
+    private User tokenUser(StoredRefreshToken rt) {
+        return rt.userId() != null ? userRepository.findWithClientAppById(rt.userId()).orElse(null) : null;
+    }
+
+    private OrgOwner tokenOwner(StoredRefreshToken rt) {
+        return rt.orgOwnerId() != null ? orgOwnerRepository.findById(rt.orgOwnerId()).orElse(null) : null;
+    }
+
+    private AuthSession tokenSession(StoredRefreshToken rt) {
+        return rt.sessionId() != null ? authSessionRepository.findById(rt.sessionId()).orElse(null) : null;
+    }
+
+    private AuthException invalidCredentials(String throttleKey, String clientIp, UUID organizationId,
+                                             UUID clientAppId, UUID subjectId, String username) {
+        loginThrottleService.recordFailure(throttleKey, clientIp);
+        authEventService.publish(AuthEvent.Type.LOGIN_FAILURE, organizationId, clientAppId, subjectId,
+                username, clientIp, subjectId != null ? "bad_password" : "unknown_user");
+        return AuthException.unauthorized("Invalid credentials");
+    }
 
+    // Success events are published only once the transaction commits
+    private void publishEvent(AuthEvent.Type type, User user, OrgOwner owner, String clientIp) {
+        if (user != null) {
+            authEventService.publishAfterCommit(type, user.getOrganization().getId(), user.getClientApp().getId(),
+                    user.getId(), user.getUsername(), clientIp, null);
+        } else if (owner != null) {
+            UUID organizationId = owner.getOrganization() != null ? owner.getOrganization().getId() : null;
+            authEventService.publishAfterCommit(type, organizationId, null, owner.getId(), owner.getUsername(), clientIp, null);
+        }
+    }
+
+    /**
+     * Signs the access token and enforces jwt.max-access-token-size. Embedded metadata is the only
+     * unbounded claim, so an oversized token is re-issued without it before giving up.
+     */
+    private String issueAccessToken(Map<String, Object> claims) {
+        String token = jwtUtilService.generateAccessToken(claims);
+        int maxSize = jwtProperties.getMaxAccessTokenSize();
+        if (maxSize <= 0 || token.length() <= maxSize) {
+            return token;
+        }
+
+        if (TokenClaims.stripMetadata(claims)) {
+            log.warn("Access token of {} bytes exceeds budget of {}; dropped embedded user metadata", token.length(), maxSize);
+            token = jwtUtilService.generateAccessToken(claims);
+            if (token.length() <= maxSize) {
+                return token;
+            }
+        }
+
+        throw new RuntimeException("Access token exceeds the configured size budget");
+    }
+
+    /**
+     * Immutable copy of a client app user for coalesced lookups, with the identity fields token
+     * issuance reads.
+     */
+    private record MemberSnapshot(UUID id, String username, Map<String, Object> metadata, long tokenGeneration,
+                                  ClientAppSnapshot clientApp) {
+
+        // Expects the identity to be loaded already
+        static MemberSnapshot of(User user, ClientAppSnapshot clientApp) {
+            Identity identity = user.getIdentity();
+            Map<String, Object> metadata = identity.getUserMetadata();
+            return new MemberSnapshot(user.getId(), user.getUsername(),
+                    metadata != null ? Collections.unmodifiableMap(new HashMap<>(metadata)) : null,
+                    identity.getTokenGeneration(), clientApp);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.devang.authentication.service;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent map capped at a configured number of entries. A put on a full cache first drops about
+ * a tenth of the entries; the map keeps no access order, so which ones is arbitrary. That is enough
+ * for caches whose misses only cost a lookup, and avoids the locking an LRU needs. Expiry is left
+ * to the caller, which stores its own deadline in the value.
+ */
+public final class BoundedCache<K, V> {
+
+    private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<>();
+    // Read on every put, so the limit can come from properties injected after construction
+    private final IntSupplier maxSize;
+
+    public BoundedCache(IntSupplier maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    public void put(K key, V value) {
+        if (entries.size() >= maxSize.getAsInt()) {
+            evictSome();
+        }
+        entries.put(key, value);
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = entries.get(key);
+        if (value != null) {
+            return value;
+        }
+        if (entries.size() >= maxSize.getAsInt()) {
+            evictSome();
+        }
+        return entries.computeIfAbsent(key, loader);
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    // Removes the entry only while it still maps to value, so a concurrent replacement survives
+    public void remove(K key, V value) {
+        entries.remove(key, value);
+    }
+
+    public void removeIf(Predicate<? super V> filter) {
+        entries.values().removeIf(filter);
+    }
+
+    private void evictSome() {
+        int toRemove = Math.max(1, entries.size() / 10);
+        Iterator<K> it = entries.keySet().iterator();
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.entity.Organization;
+
+import java.util.UUID;
+
+/**
+ * Immutable copy of the client app and organization fields a login, signup or SSO exchange reads.
+ * Handed to every caller of a coalesced lookup in place of the entity, which belongs to the
+ * persistence context of whichever request happened to load it; callers write through references.
+ */
+public record ClientAppSnapshot(UUID id,
+                                String apiKey,
+                                Boolean includeMetadataInToken,
+                                UUID organizationId,
+                                String organizationName,
+                                boolean eagerProvisioning) {
+
+    // Expects the organization to be loaded already
+    public static ClientAppSnapshot of(ClientApp clientApp) {
+        Organization org = clientApp.getOrganization();
+        return new ClientAppSnapshot(clientApp.getId(), clientApp.getClientAppApiKey(),
+                clientApp.getIncludeMetadataInToken(), org.getId(), org.getName(), org.isEagerProvisioning());
+    }
+}
@@ -0,0 +1,275 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.DeletionProperties;
+import com.devang.authentication.entity.DeletionJob;
+import com.devang.authentication.repository.*;
+import com.devang.authentication.store.RefreshTokenStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Runs organization and client app deletion jobs. Children are removed bottom-up with set-based
+ * deletes of at most deletion.batch-size ids per transaction, so neither memory nor transaction
+ * length grows with the size of the tenant. The API keys are already disabled by the time a job
+ * starts (see {@link OrganizationService}), so nothing new is written under the target meanwhile
+ * apart from in-flight requests, which later chunks pick up.
+ * <p>
+ * An instance runs a job only after claiming a lease on it, renewed with every chunk, so a job
+ * never runs on two instances at once. Jobs whose instance died are taken over once the lease
+ * expires; failed jobs are retried with exponential backoff.
+ */
+@Service
+public class DeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeletionService.class);
+
+    @Autowired
+    private DeletionJobRepository deletionJobRepository;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private AuthSessionRepository authSessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IdentityRepository identityRepository;
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Autowired
+    private OrgOwnerRepository orgOwnerRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Autowired
+    private OrganizationStatsRepository organizationStatsRepository;
+
+    @Autowired
+    private ClientAppStatsRepository clientAppStatsRepository;
+
+    @Autowired
+    private DailyLoginStatsRepository dailyLoginStatsRepository;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private AuthEventRepository authEventRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private DeletionProperties deletionProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("deletionExecutor")
+    private ThreadPoolTaskExecutor deletionExecutor;
+
+    // Identifies this instance as lease owner
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Jobs queued or running here, so polling does not queue them again
+    private final Set<UUID> queued = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Queues a job on this instance. It only runs if the lease can be claimed when its turn comes.
+     */
+    public void submit(UUID jobId) {
+        if (!queued.add(jobId)) {
+            return;
+        }
+        try {
+            deletionExecutor.execute(() -> {
+                try {
+                    runJob(jobId);
+                } finally {
+                    queued.remove(jobId);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // Left unclaimed, so the next poll here or elsewhere picks it up
+            queued.remove(jobId);
+            log.warn("Deletion job {} not queued: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Picks up jobs interrupted by a shutdown or crash once their lease has expired, and failed jobs
+     * once their backoff has passed. Every phase only looks at what is left, so a job simply
+     * continues where it stopped.
+     */
+    @Scheduled(initialDelay = 10000, fixedDelayString = "${deletion.poll-interval:30000}")
+    public void resumeJobs() {
+        for (UUID jobId : deletionJobRepository.findClaimableIds(DeletionJob.Status.COMPLETED, LocalDateTime.now())) {
+            submit(jobId);
+        }
+    }
+
+    private void runJob(UUID jobId) {
+        if (!claim(jobId)) {
+            return;
+        }
+        DeletionJob job = deletionJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        try {
+            UUID targetId = job.getTargetId();
+            if (job.getTargetType() == DeletionJob.TargetType.CLIENT_APP) {
+                purge(jobId, "refresh_tokens", limit -> refreshTokenStore.deleteByClientApp(targetId, limit));
+                purge(jobId, "auth_sessions", page -> authSessionRepository.findIdsByClientAppId(targetId, page),
+                        authSessionRepository::deleteAllByIdInBatch);
+                purge(jobId, "users", page -> userRepository.findIdsByClientAppId(targetId, page),
+                        userRepository::deleteAllByIdInBatch);
+                // Identities still used by other client apps of the organization stay
+                purge(jobId, "identities", page -> identityRepository.findOrphanIdsByOrganizationId(job.getOrganizationId(), page),
+                        identityRepository::deleteAllByIdInBatch);
+                purge(jobId, "idempotency_records", page -> idempotencyRecordRepository.findIdsByClientAppId(targetId, page),
+                        idempotencyRecordRepository::deleteAllByIdInBatch);
+                statsService.forgetClientApp(targetId);
+                purge(jobId, "client_app_stats", page -> clientAppStatsRepository.existsById(targetId) ? List.of(targetId) : List.of(),
+                        clientAppStatsRepository::deleteAllByIdInBatch);
+                purge(jobId, "client_apps", page -> clientAppRepository.existsById(targetId) ? List.of(targetId) : List.of(),
+                        clientAppRepository::deleteAllByIdInBatch);
+            } else {
+                purge(jobId, "refresh_tokens", limit -> refreshTokenStore.deleteByOrganization(targetId, limit));
+                purge(jobId, "auth_sessions", page -> authSessionRepository.findIdsByUserOrganizationId(targetId, page),
+                        authSessionRepository::deleteAllByIdInBatch);
+                purge(jobId, "auth_sessions", page -> authSessionRepository.findIdsByOrgOwnerOrganizationId(targetId, page),
+                        authSessionRepository::deleteAllByIdInBatch);
+                purge(jobId, "users", page -> userRepository.findIdsByOrganizationId(targetId, page),
+                        userRepository::deleteAllByIdInBatch);
+                purge(jobId, "identities", page -> identityRepository.findIdsByOrganizationId(targetId, page),
+                        identityRepository::deleteAllByIdInBatch);
+                purge(jobId, "client_apps", page -> clientAppRepository.findIdsByOrganizationId(targetId, page),
+                        clientAppRepository::deleteAllByIdInBatch);
+                purge(jobId, "org_owners", page -> orgOwnerRepository.findIdsByOrganizationId(targetId, page),
+                        orgOwnerRepository::deleteAllByIdInBatch);
+                purge(jobId, "idempotency_records", page -> idempotencyRecordRepository.findIdsByOrganizationId(targetId, page),
+                        idempotencyRecordRepository::deleteAllByIdInBatch);
+                statsService.forgetOrganization(targetId);
+                purge(jobId, "client_app_stats", page -> clientAppStatsRepository.findIdsByOrganizationId(targetId, page),
+                        clientAppStatsRepository::deleteAllByIdInBatch);
+                purge(jobId, "daily_login_stats", page -> dailyLoginStatsRepository.findIdsByOrganizationId(targetId, page),
+                        dailyLoginStatsRepository::deleteAllByIdInBatch);
+                purge(jobId, "auth_events", page -> authEventRepository.findIdsByOrganizationId(targetId, page),
+                        authEventRepository::deleteAllByIdInBatch);
+                purge(jobId, "organization_stats", page -> organizationStatsRepository.existsById(targetId) ? List.of(targetId) : List.of(),
+                        organizationStatsRepository::deleteAllByIdInBatch);
+                purge(jobId, "organizations", page -> organizationRepository.existsById(targetId) ? List.of(targetId) : List.of(),
+                        organizationRepository::deleteAllByIdInBatch);
+            }
+
+            release(jobId, DeletionJob.Status.COMPLETED, null, null);
+            log.info("Deletion job {} removed {} {}", jobId, job.getTargetType(), targetId);
+        } catch (LeaseLostException e) {
+            log.warn("Deletion job {} was taken over by another instance", jobId);
+        } catch (Exception e) {
+            // Already removed rows are not revisited by the retry
+            LocalDateTime retryAt = LocalDateTime.now().plus(retryDelay(job.getAttempts()), ChronoUnit.MILLIS);
+            release(jobId, DeletionJob.Status.FAILED, e.getMessage(), retryAt);
+            log.warn("Deletion job {} failed, retrying at {}: {}", jobId, retryAt, e.getMessage());
+        }
+    }
+
+    private boolean claim(UUID jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> deletionJobRepository.claim(jobId, instanceId,
+                DeletionJob.Status.RUNNING, DeletionJob.Status.COMPLETED, now, leaseUntil(now)));
+        return claimed != null && claimed > 0;
+    }
+
+    private void release(UUID jobId, DeletionJob.Status status, String error, LocalDateTime nextAttemptAt) {
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(tx -> deletionJobRepository.release(jobId, instanceId, status, error,
+                status == DeletionJob.Status.COMPLETED ? now : null, nextAttemptAt, now));
+    }
+
+    // attempts includes the one that just failed
+    private long retryDelay(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(deletionProperties.getRetryMaxDelay(), deletionProperties.getRetryBaseDelay() << exponent);
+    }
+
+    private LocalDateTime leaseUntil(LocalDateTime now) {
+        return now.plus(deletionProperties.getLeaseDuration(), ChronoUnit.MILLIS);
+    }
+
+    // Rolls back the chunk it is thrown from; the job belongs to another instance now
+    private void addProgress(UUID jobId, String phase, long rows) {
+        LocalDateTime now = LocalDateTime.now();
+        if (deletionJobRepository.addProgress(jobId, instanceId, phase, rows, now, leaseUntil(now)) == 0) {
+            throw new LeaseLostException();
+        }
+    }
+
+    private void purge(UUID jobId, String phase, Function<Pageable, List<UUID>> nextIds, Consumer<List<UUID>> delete) {
+        Pageable firstPage = PageRequest.of(0, deletionProperties.getBatchSize());
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<UUID> ids = nextIds.apply(firstPage);
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                delete.accept(ids);
+                addProgress(jobId, phase, ids.size());
+                return ids.size();
+            });
+            if (deleted == null || deleted == 0) {
+                return;
+            }
+        }
+    }
+
+    // For stores that delete a chunk themselves and report how many rows it held
+    private void purge(UUID jobId, String phase, IntUnaryOperator deleteChunk) {
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                int count = deleteChunk.applyAsInt(deletionProperties.getBatchSize());
+                if (count > 0) {
+                    addProgress(jobId, phase, count);
+                }
+                return count;
+            });
+            if (deleted == null || deleted == 0) {
+                return;
+            }
+        }
+    }
+
+    private static final class LeaseLostException extends RuntimeException {
+        LeaseLostException() {
+            super(null, null, false, false);
+        }
+    }
+}
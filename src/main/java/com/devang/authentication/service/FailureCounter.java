@@ -0,0 +1,79 @@
+package com.devang.authentication.service;
+
+/**
+ * Per-key failure counts over a sliding window, for throttling decisions. Every failure is counted
+ * twice: in a {@link SlidingWindowCounter} sketch, and exactly in a per-key window held in a
+ * {@link BoundedCache}. The sketch never under-counts, so a key it puts below {@code floor} is
+ * answered without touching the exact windows. Above the floor only the exact count is used, so the
+ * over-counting of a saturated sketch (a spray of failures across many usernames or addresses) can
+ * never lock out a key that did not fail itself. When more keys fail than the cache holds, some
+ * exact windows are dropped and those keys restart from zero, which errs towards letting attempts
+ * through rather than rejecting everyone.
+ */
+class FailureCounter {
+
+    private final SlidingWindowCounter sketch;
+    private final BoundedCache<String, KeyWindow> windows;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int floor;
+
+    FailureCounter(long windowMillis, int buckets, int sketchWidth, int sketchDepth, int trackedKeys, int floor) {
+        this.sketch = new SlidingWindowCounter(windowMillis, buckets, sketchWidth, sketchDepth);
+        this.windows = new BoundedCache<>(() -> trackedKeys);
+        this.buckets = buckets;
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.floor = floor;
+    }
+
+    void record(String key, long nowMillis) {
+        sketch.increment(key, nowMillis);
+        windows.computeIfAbsent(key, k -> new KeyWindow(buckets)).increment(nowMillis / bucketMillis, nowMillis);
+    }
+
+    Failures failures(String key, long nowMillis) {
+        if (sketch.estimate(key, nowMillis) < floor) {
+            return Failures.NONE;
+        }
+        KeyWindow window = windows.get(key);
+        return window != null ? window.failures(nowMillis / bucketMillis) : Failures.NONE;
+    }
+
+    // Failures inside the window and when the latest one happened (0 = none)
+    record Failures(int count, long lastFailureAt) {
+
+        static final Failures NONE = new Failures(0, 0);
+    }
+
+    private static final class KeyWindow {
+
+        private final int[] counts;
+        private final long[] slots;
+        private long lastFailureAt;
+
+        KeyWindow(int buckets) {
+            this.counts = new int[buckets];
+            this.slots = new long[buckets];
+        }
+
+        synchronized void increment(long slot, long nowMillis) {
+            int index = (int) (slot % counts.length);
+            if (slots[index] != slot) {
+                slots[index] = slot;
+                counts[index] = 0;
+            }
+            counts[index]++;
+            lastFailureAt = nowMillis;
+        }
+
+        synchronized Failures failures(long slot) {
+            int sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (slot - slots[i] < counts.length) {
+                    sum += counts[i];
+                }
+            }
+            return new Failures(sum, lastFailureAt);
+        }
+    }
+}
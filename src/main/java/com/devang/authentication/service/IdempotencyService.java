@@ -0,0 +1,213 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.IdempotencyProperties;
+import com.devang.authentication.dto.response.ApiResponse;
+import com.devang.authentication.entity.IdempotencyRecord;
+import com.devang.authentication.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Makes signup and client app creation safe to retry with an Idempotency-Key: a retry of a request
+ * that already succeeded gets 409 naming the resource it created, instead of a second hash and
+ * insert that fails on a unique constraint. Responses themselves are never stored, as they carry
+ * tokens and API keys; a client that lost one logs in or reads the client app instead. Outcomes
+ * are kept in a bounded memory cache backed by the idempotency_records table for other replicas and
+ * restarts, and concurrent duplicates on this instance wait for the first one. A retry only matches
+ * when its body is identical, checked through a hash keyed with idempotency.fingerprint-secret so
+ * no password is ever stored; caller API keys are stored hashed the same way.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final String RESOURCE_HEADER = "Idempotent-Resource-Id";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private IdempotencyProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final BoundedCache<RecordKey, Outcome> outcomes = new BoundedCache<>(() -> properties.getCacheMaxSize());
+    private final ConcurrentMap<RecordKey, CompletableFuture<Outcome>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * What a successful request created: the resource a replay names, and the tenant it belongs to
+     * so deleting the tenant also purges the record. clientAppId may be null.
+     */
+    public record Created(UUID resourceId, UUID organizationId, UUID clientAppId) {
+    }
+
+    /**
+     * Runs {@code action} unless a request with the key already succeeded in {@code scope} for the
+     * same caller. Without a key the action simply runs. Only 2xx responses are recorded, so failed
+     * attempts can be retried with the same key.
+     *
+     * @param callerApiKey API key the request was made with, or null; only its hash is stored
+     * @param created      reads the created resource from a successful response
+     */
+    public <T> ResponseEntity<ApiResponse<T>> execute(String scope, String callerApiKey, String idempotencyKey, Object request,
+                                                      Function<T, Created> created,
+                                                      Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("Invalid " + HEADER, "Must be at most " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        RecordKey key = new RecordKey(callerApiKey != null ? scope + ":" + hmac(callerApiKey.getBytes(StandardCharsets.UTF_8)) : scope,
+                idempotencyKey);
+        String fingerprint = fingerprint(request);
+        Outcome stored = lookup(key);
+        if (stored != null) {
+            return replay(stored, fingerprint);
+        }
+
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        CompletableFuture<Outcome> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // A duplicate is in progress here; report its outcome, or run again if it failed
+            stored = running.join();
+            return stored != null ? replay(stored, fingerprint) : action.get();
+        }
+
+        stored = null;
+        try {
+            ResponseEntity<ApiResponse<T>> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null && response.getBody().getData() != null) {
+                stored = record(key, fingerprint, created.apply(response.getBody().getData()));
+                return response;
+            }
+            // Another replica may have completed the same request first, making this one fail
+            Outcome winner = lookup(key);
+            return winner != null ? replay(winner, fingerprint) : response;
+        } finally {
+            mine.complete(stored);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Hourly; expired rows are never replayed, this only reclaims the space
+    @Scheduled(initialDelay = 60000, fixedDelay = 3600000)
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        outcomes.removeIf(outcome -> outcome.expiresAt() <= now);
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency records", deleted);
+        }
+    }
+
+    private Outcome lookup(RecordKey key) {
+        long now = System.currentTimeMillis();
+        Outcome outcome = outcomes.get(key);
+        if (outcome != null) {
+            if (outcome.expiresAt() > now) {
+                return outcome;
+            }
+            outcomes.remove(key, outcome);
+        }
+
+        IdempotencyRecord record = idempotencyRecordRepository.findByScopeAndIdempotencyKey(key.scope(), key.idempotencyKey())
+                .orElse(null);
+        if (record == null || !record.getExpiresAt().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+        long expiresAt = now + Duration.between(LocalDateTime.now(), record.getExpiresAt()).toMillis();
+        outcome = new Outcome(record.getFingerprint(), record.getResourceId(), expiresAt);
+        outcomes.put(key, outcome);
+        return outcome;
+    }
+
+    private Outcome record(RecordKey key, String fingerprint, Created created) {
+        Outcome outcome = new Outcome(fingerprint, created.resourceId(), System.currentTimeMillis() + properties.getTtl());
+        outcomes.put(key, outcome);
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            idempotencyRecordRepository.save(IdempotencyRecord.builder()
+                    .scope(key.scope())
+                    .idempotencyKey(key.idempotencyKey())
+                    .fingerprint(fingerprint)
+                    .resourceId(created.resourceId())
+                    .organizationId(created.organizationId())
+                    .clientAppId(created.clientAppId())
+                    .createdAt(now)
+                    .expiresAt(now.plus(Duration.ofMillis(properties.getTtl())))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Another replica recorded the same key concurrently; either outcome is valid to report
+        } catch (Exception e) {
+            // The memory cache still covers retries reaching this instance
+            log.warn("Storing idempotency record {} failed: {}", key.idempotencyKey(), e.getMessage());
+        }
+        return outcome;
+    }
+
+    private <T> ResponseEntity<ApiResponse<T>> replay(Outcome outcome, String fingerprint) {
+        if (!outcome.fingerprint().equals(fingerprint)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(ApiResponse.error("Idempotency key reused", HEADER + " was already used for a different request"));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(REPLAYED_HEADER, "true");
+        headers.set(RESOURCE_HEADER, outcome.resourceId().toString());
+        return ResponseEntity.status(HttpStatus.CONFLICT).headers(headers)
+                .body(ApiResponse.error("Request already completed", "Created " + outcome.resourceId()));
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return hmac(objectMapper.writeValueAsBytes(request));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String hmac(byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(properties.getFingerprintSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return Base64.getEncoder().encodeToString(mac.doFinal(data));
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not hash idempotency data", e);
+        }
+    }
+
+    private record RecordKey(String scope, String idempotencyKey) {
+    }
+
+    private record Outcome(String fingerprint, UUID resourceId, long expiresAt) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.IntrospectionProperties;
+import com.devang.authentication.dto.response.TokenIntrospectionResponse;
+import com.devang.authentication.exception.AuthException;
+import com.devang.authentication.repository.AuthSessionRepository;
+import com.devang.authentication.store.RefreshTokenStore;
+import com.devang.authentication.store.StoredRefreshToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+public class IntrospectionService {
+
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+
+    @Autowired
+    private JwtUtilService jwtUtilService;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private AuthSessionRepository authSessionRepository;
+
+    @Autowired
+    private IntrospectionProperties introspectionProperties;
+
+    /**
+     * Verifies a batch of access and/or refresh tokens. Signatures are checked in parallel for
+     * larger batches. The revocation state of every refresh token in the batch is resolved with
+     * one IN-list lookup, and the sessions they belong to with one more, so a token refresh would
+     * reject (logged out everywhere, or its session revoked) is never reported active. Results are
+     * returned in request order.
+     */
+    @Transactional(readOnly = true)
+    public List<TokenIntrospectionResponse> introspect(List<String> tokens) {
+        if (tokens.size() > introspectionProperties.getMaxBatchSize()) {
+            throw AuthException.badRequest("Batch exceeds the maximum of " + introspectionProperties.getMaxBatchSize() + " tokens");
+        }
+
+        Stream<String> stream = tokens.size() >= introspectionProperties.getParallelThreshold()
+                ? tokens.parallelStream()
+                : tokens.stream();
+        List<TokenIntrospectionResponse> results = stream
+                .map(this::verify)
+                .collect(Collectors.toList());
+
+        Set<String> refreshTokens = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (results.get(i).isActive() && REFRESH.equals(results.get(i).getTokenType())) {
+                refreshTokens.add(tokens.get(i));
+            }
+        }
+        if (refreshTokens.isEmpty()) {
+            return results;
+        }
+
+        Map<String, StoredRefreshToken> stored = refreshTokenStore.findByTokens(refreshTokens);
+        Set<UUID> sessionIds = new HashSet<>();
+        for (StoredRefreshToken rt : stored.values()) {
+            if (rt.sessionId() != null && !rt.revoked() && !rt.isExpired()) {
+                sessionIds.add(rt.sessionId());
+            }
+        }
+        Set<UUID> activeSessions = sessionIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(authSessionRepository.findActiveIds(sessionIds, LocalDateTime.now()));
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenIntrospectionResponse result = results.get(i);
+            if (!result.isActive() || !REFRESH.equals(result.getTokenType())) {
+                continue;
+            }
+            StoredRefreshToken rt = stored.get(tokens.get(i));
+            if (rt == null) {
+                result.setActive(false);
+                result.setError("Unknown refresh token");
+            } else if (rt.isExpired() || rt.revoked()) {
+                result.setActive(false);
+                result.setError("Refresh token expired or revoked");
+            } else if (rt.sessionId() != null && !activeSessions.contains(rt.sessionId())) {
+                result.setActive(false);
+                result.setError("Session has been revoked");
+            }
+        }
+        return results;
+    }
+
+    private TokenIntrospectionResponse verify(String token) {
+        Claims claims;
+        try {
+            claims = jwtUtilService.extractClaims(token);
+        } catch (ExpiredJwtException e) {
+            return TokenIntrospectionResponse.builder()
+                    .active(false)
+                    .tokenType(TokenClaims.userType(e.getClaims()) != null ? ACCESS : REFRESH)
+                    .expiresAt(e.getClaims().getExpiration().toInstant())
+                    .error("Token expired")
+                    .build();
+        } catch (Exception e) {
+            return TokenIntrospectionResponse.builder()
+                    .active(false)
+                    .error("Invalid token")
+                    .build();
+        }
+
+        // Access tokens always carry a user type; refresh tokens only carry jti/iat/exp
+        boolean access = TokenClaims.userType(claims) != null;
+        return TokenIntrospectionResponse.builder()
+                .active(true)
+                .tokenType(access ? ACCESS : REFRESH)
+                .expiresAt(claims.getExpiration().toInstant())
+                .claims(access ? new HashMap<>(claims) : null)
+                .build();
+    }
+}
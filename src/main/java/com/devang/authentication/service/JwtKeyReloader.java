@@ -0,0 +1,72 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.JwtProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Watches jwt.reload-file (a properties file using the same jwt.* keys) and pushes changes into
+ * {@link JwtUtilService} without a restart. Missing keys keep their current value.
+ */
+@Component
+@ConditionalOnProperty(prefix = "jwt", name = "reload-file")
+public class JwtKeyReloader {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyReloader.class);
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    @Autowired
+    private JwtUtilService jwtUtilService;
+
+    private long lastModified = -1;
+
+    @Scheduled(fixedDelayString = "${jwt.reload-interval:30000}")
+    public synchronized void reloadIfChanged() {
+        if (!StringUtils.hasText(jwtProperties.getReloadFile())) {
+            return;
+        }
+        Path file = Path.of(jwtProperties.getReloadFile());
+        try {
+            if (!Files.isRegularFile(file)) {
+                return;
+            }
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == lastModified) {
+                return;
+            }
+
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+
+            String secret = properties.getProperty("jwt.secret", jwtProperties.getSecret());
+            long accessExpiration = Long.parseLong(properties.getProperty("jwt.access-token-expiration",
+                    String.valueOf(jwtProperties.getAccessTokenExpiration())));
+            long refreshExpiration = Long.parseLong(properties.getProperty("jwt.refresh-token-expiration",
+                    String.valueOf(jwtProperties.getRefreshTokenExpiration())));
+
+            jwtUtilService.updateSigningConfig(secret, accessExpiration, refreshExpiration);
+            jwtProperties.setSecret(secret);
+            jwtProperties.setAccessTokenExpiration(accessExpiration);
+            jwtProperties.setRefreshTokenExpiration(refreshExpiration);
+            lastModified = modified;
+        } catch (IOException | RuntimeException e) {
+            // Keep signing with the current configuration; a bad file must not take the service down
+            log.error("Failed to reload JWT configuration from {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -3,71 +3,223 @@ package com.devang.authentication.service;
 import com.devang.authentication.config.JwtProperties;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class JwtUtilService {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtUtilService.class);
+
+    private static final int INITIAL_KEY_VERSION = 1;
+
+    // Bytes of the key's SHA-256 kept as its kid: enough to tell keys apart, not to identify the secret
+    private static final int KEY_ID_BYTES = 8;
+
     @Autowired
     private JwtProperties jwtProperties;
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtProperties.getSecret().getBytes(StandardCharsets.UTF_8);
+    private final AtomicReference<SigningState> state = new AtomicReference<>();
+
+    private final DistributionSummary accessTokenSize;
+    private final DistributionSummary refreshTokenSize;
+
+    public JwtUtilService(MeterRegistry meterRegistry) {
+        this.accessTokenSize = tokenSizeSummary(meterRegistry, "access");
+        this.refreshTokenSize = tokenSizeSummary(meterRegistry, "refresh");
+        Gauge.builder("auth.jwt.key.version", state, s -> s.get() != null ? s.get().current().version() : 0)
+                .description("Signing keys this instance has used since it started, counting the initial one")
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary tokenSizeSummary(MeterRegistry meterRegistry, String type) {
+        return DistributionSummary.builder("auth.token.size")
+                .description("Encoded JWT size")
+                .baseUnit("bytes")
+                .tag("type", type)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        SigningKey initial = new SigningKey(INITIAL_KEY_VERSION, keyId(jwtProperties.getSecret()),
+                signingKey(jwtProperties.getSecret()), jwtProperties.getSecret(),
+                jwtProperties.getAccessTokenExpiration(), jwtProperties.getRefreshTokenExpiration());
+        state.set(new SigningState(initial, List.of()));
+    }
+
+    /**
+     * Atomically swaps in new signing configuration. A changed secret becomes a new signing key;
+     * the replaced key keeps verifying tokens for jwt.key-grace-period so tokens already handed
+     * out stay valid until they would have expired anyway. Every key replaced within that period is
+     * kept, so rotating twice in quick succession does not cut the oldest tokens short.
+     */
+    public synchronized void updateSigningConfig(String secret, long accessTokenExpiration, long refreshTokenExpiration) {
+        SigningState currentState = state.get();
+        SigningKey current = currentState.current();
+
+        SigningState next;
+        if (current.secret().equals(secret)) {
+            SigningKey updated = new SigningKey(current.version(), current.keyId(), current.key(), secret,
+                    accessTokenExpiration, refreshTokenExpiration);
+            next = new SigningState(updated, currentState.retired());
+        } else {
+            SigningKey rotated = new SigningKey(current.version() + 1, keyId(secret), signingKey(secret), secret,
+                    accessTokenExpiration, refreshTokenExpiration);
+            long now = System.currentTimeMillis();
+            // Expired keys are dropped here, and so is a retired key the new secret brings back
+            List<RetiredKey> retired = new ArrayList<>();
+            retired.add(new RetiredKey(current, now + jwtProperties.getKeyGracePeriod()));
+            for (RetiredKey old : currentState.retired()) {
+                if (old.validUntil() > now && !old.key().keyId().equals(rotated.keyId())
+                        && !old.key().keyId().equals(current.keyId())) {
+                    retired.add(old);
+                }
+            }
+            next = new SigningState(rotated, List.copyOf(retired));
+            log.info("Rotated JWT signing key to kid {}; {} retired key(s) still verify", rotated.keyId(), retired.size());
+        }
+        state.set(next);
+    }
+
+    public int getActiveKeyVersion() {
+        return state.get().current().version();
+    }
+
+    /**
+     * Key id derived from the key material, so every instance signing with the same secret sends
+     * the same kid no matter how many rotations it has seen since it started.
+     */
+    private static String keyId(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, KEY_ID_BYTES));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static SecretKey signingKey(String secret) {
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         return Keys.hmacShaKeyFor(keyBytes);
     }
 
     public String generateAccessToken(Map<String, Object> claims) {
+        SigningKey signing = state.get().current();
         Instant now = Instant.now();
-        return Jwts.builder()
+        String token = Jwts.builder()
+                .header().keyId(signing.keyId()).and()
                 .setClaims(claims)
                 .setId(UUID.randomUUID().toString())
                 .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(now.plusMillis(jwtProperties.getAccessTokenExpiration())))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setExpiration(Date.from(now.plusMillis(signing.accessTokenExpiration())))
+                .signWith(signing.key(), SignatureAlgorithm.HS256)
                 .compact();
+        accessTokenSize.record(token.length());
+        return token;
     }
 
     public String generateRefreshToken() {
+        SigningKey signing = state.get().current();
         Instant now = Instant.now();
-        return Jwts.builder()
+        String token = Jwts.builder()
+                .header().keyId(signing.keyId()).and()
                 .setId(UUID.randomUUID().toString())
                 .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(now.plusMillis(jwtProperties.getRefreshTokenExpiration())))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .setExpiration(Date.from(now.plusMillis(signing.refreshTokenExpiration())))
+                .signWith(signing.key(), SignatureAlgorithm.HS256)
                 .compact();
+        refreshTokenSize.record(token.length());
+        return token;
     }
 
     public Jws<Claims> validateTokenAndGetClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token);
+        return state.get().parser().parseSignedClaims(token);
     }
 
     public Claims extractClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+        return state.get().parser()
+                .parseSignedClaims(token)
                 .getPayload();
     }
 
     public long getAccessExpirationSeconds() {
-        return jwtProperties.getAccessTokenExpiration() / 1000;
+        return state.get().current().accessTokenExpiration() / 1000;
     }
 
     public long getRefreshExpirationSeconds() {
-        return jwtProperties.getRefreshTokenExpiration() / 1000;
+        return state.get().current().refreshTokenExpiration() / 1000;
+    }
+
+    // version only counts this instance's rotations; keyId is what tokens carry
+    private record SigningKey(int version, String keyId, SecretKey key, String secret,
+                              long accessTokenExpiration, long refreshTokenExpiration) {
+    }
+
+    // A replaced key and the time until which it still verifies tokens
+    private record RetiredKey(SigningKey key, long validUntil) {
+    }
+
+    /**
+     * Immutable snapshot of the active key and the retired keys still in their grace period (newest
+     * first), with a parser built once per snapshot instead of per call.
+     */
+    private record SigningState(SigningKey current, List<RetiredKey> retired, JwtParser parser) {
+
+        SigningState(SigningKey current, List<RetiredKey> retired) {
+            this(current, retired, null);
+        }
+
+        SigningState {
+            if (parser == null) {
+                SigningKey active = current;
+                List<RetiredKey> old = retired;
+                parser = Jwts.parser()
+                        .keyLocator(new LocatorAdapter<Key>() {
+                            @Override
+                            protected Key locate(JwsHeader header) {
+                                String kid = header.getKeyId();
+                                long now = System.currentTimeMillis();
+                                for (RetiredKey candidate : old) {
+                                    if (candidate.key().keyId().equals(kid) && now < candidate.validUntil()) {
+                                        return candidate.key().key();
+                                    }
+                                }
+                                // Tokens without a kid predate key ids; unknown or expired kids fall
+                                // through to the active key and fail its signature check
+                                return active.key();
+                            }
+                        })
+                        .build();
+            }
+        }
     }
 }
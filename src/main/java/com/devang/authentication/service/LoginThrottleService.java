@@ -0,0 +1,96 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.LoginThrottleProperties;
+import com.devang.authentication.exception.AuthException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks failed logins per username (scoped to the client app, or to org owners) and per client IP,
+ * and rejects further attempts before any password hashing happens. Decisions are made on exact
+ * per-key counts, so a failure spray across many keys cannot push an innocent one over a threshold.
+ * Throttled attempts are answered with 429 and a Retry-After right away; nothing waits on the
+ * request thread.
+ */
+@Service
+public class LoginThrottleService {
+
+    private final LoginThrottleProperties properties;
+    private final FailureCounter usernameFailures;
+    private final FailureCounter ipFailures;
+    private final Counter lockouts;
+    private final Counter delays;
+
+    public LoginThrottleService(LoginThrottleProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.usernameFailures = new FailureCounter(properties.getWindow(), properties.getBuckets(),
+                properties.getSketchWidth(), properties.getSketchDepth(), properties.getTrackedKeys(),
+                Math.min(properties.getUsernameDelayThreshold(), properties.getUsernameLockoutThreshold()));
+        this.ipFailures = new FailureCounter(properties.getWindow(), properties.getBuckets(),
+                properties.getSketchWidth(), properties.getSketchDepth(), properties.getTrackedKeys(),
+                Math.min(properties.getIpDelayThreshold(), properties.getIpLockoutThreshold()));
+        this.lockouts = Counter.builder("auth.login.throttle").tag("action", "lockout").register(meterRegistry);
+        this.delays = Counter.builder("auth.login.throttle").tag("action", "delay").register(meterRegistry);
+    }
+
+    public static String usernameKey(String apiKey, String username) {
+        return (apiKey == null ? "owner" : apiKey) + ":" + username;
+    }
+
+    /**
+     * Throws a 429 if either the username or the IP is locked out, or if the progressive delay its
+     * failures call for has not yet passed since the latest one. Must be called before the password
+     * is checked.
+     */
+    public void checkAllowed(String usernameKey, String clientIp) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        FailureCounter.Failures user = usernameFailures.failures(usernameKey, now);
+        FailureCounter.Failures ip = clientIp != null ? ipFailures.failures(clientIp, now) : FailureCounter.Failures.NONE;
+
+        if (user.count() >= properties.getUsernameLockoutThreshold() || ip.count() >= properties.getIpLockoutThreshold()) {
+            lockouts.increment();
+            // Counts only drop as whole buckets leave the window
+            long bucketMillis = properties.getWindow() / properties.getBuckets();
+            throw AuthException.tooManyRequests("Too many failed login attempts, try again later", seconds(bucketMillis));
+        }
+
+        long wait = Math.max(
+                waitFor(user, properties.getUsernameDelayThreshold(), now),
+                waitFor(ip, properties.getIpDelayThreshold(), now));
+        if (wait > 0) {
+            delays.increment();
+            throw AuthException.tooManyRequests("Too many failed login attempts, retry shortly", seconds(wait));
+        }
+    }
+
+    public void recordFailure(String usernameKey, String clientIp) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        usernameFailures.record(usernameKey, now);
+        if (clientIp != null) {
+            ipFailures.record(clientIp, now);
+        }
+    }
+
+    // Time left of the progressive delay that started with the latest failure
+    private long waitFor(FailureCounter.Failures failures, int threshold, long now) {
+        if (failures.count() < threshold) {
+            return 0;
+        }
+        int exponent = Math.min(failures.count() - threshold, 20);
+        long delay = Math.min(properties.getMaxDelay(), properties.getBaseDelay() << exponent);
+        return failures.lastFailureAt() + delay - now;
+    }
+
+    private static long seconds(long millis) {
+        return Math.max(1, (millis + 999) / 1000);
+    }
+}
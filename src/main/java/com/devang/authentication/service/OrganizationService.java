@@ -3,16 +3,25 @@ package com.devang.authentication.service;
 import com.devang.authentication.dto.request.CreateClientAppRequest;
 import com.devang.authentication.dto.request.CreateOrganizationRequest;
 import com.devang.authentication.dto.response.ClientAppResponse;
+import com.devang.authentication.dto.response.DeletionJobResponse;
 import com.devang.authentication.dto.response.OrganizationResponse;
+import com.devang.authentication.dto.response.OrganizationStatsResponse;
 import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.entity.DeletionJob;
 import com.devang.authentication.entity.Organization;
+import com.devang.authentication.exception.AuthException;
 import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.DeletionJobRepository;
 import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.security.ApiKeyPrincipalCache;
+import com.devang.authentication.store.ApiKeyStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -23,96 +32,142 @@ public class OrganizationService {
     private OrganizationRepository organizationRepository;
     @Autowired
     private ClientAppRepository clientAppRepository;
+    @Autowired
+    private ProvisioningService provisioningService;
+    @Autowired
+    private DeletionJobRepository deletionJobRepository;
+    @Autowired
+    private DeletionService deletionService;
+    @Autowired
+    private StatsService statsService;
+    @Autowired
+    private ApiKeyPrincipalCache apiKeyPrincipalCache;
+    @Autowired
+    private ApiKeyStore apiKeyStore;
     
     
     @Transactional
     public OrganizationResponse createOrganization(CreateOrganizationRequest request) {
         if (organizationRepository.existsByName(request.getName())) {
-            throw new RuntimeException("Organization name already exists");
+            throw AuthException.conflict("Organization name already exists");
         }
         
         Organization organization = new Organization();
         organization.setName(request.getName());
         organization.setDescription(request.getDescription());
+        organization.setEagerProvisioning(Boolean.TRUE.equals(request.getEagerProvisioning()));
         
         organization = organizationRepository.save(organization);
         
-        return mapToResponse(organization);
+        return mapToResponse(organization, null);
     }
     
     @Transactional(readOnly = true)
     public List<OrganizationResponse> getAllOrganizations() {
-        return organizationRepository.findAll()
+        List<Organization> organizations = organizationRepository.findAll()
                 .stream()
-                .map(this::mapToResponse)
+                .filter(organization -> organization.getDeletedAt() == null)
+                .collect(Collectors.toList());
+        Map<UUID, OrganizationStatsResponse> stats = statsService.getSummaries(
+                organizations.stream().map(Organization::getId).collect(Collectors.toList()));
+        
+        return organizations.stream()
+                .map(organization -> mapToResponse(organization, stats.get(organization.getId())))
                 .collect(Collectors.toList());
     }
     
     @Transactional(readOnly = true)
     public OrganizationResponse getOrganizationById(UUID id) {
-        Organization organization = organizationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Organization not found"));
+        Organization organization = findOrganization(id);
         
-        return mapToResponse(organization);
+        return mapToResponse(organization, statsService.getSummary(organization.getId()));
     }
     
     @Transactional(readOnly = true)
     public OrganizationResponse getOrganizationByApiKey(String apiKey) {
         Organization organization = organizationRepository.findByOrgOwnerApiKey(apiKey)
-                .orElseThrow(() -> new RuntimeException("Organization not found"));
+                .filter(org -> org.getDeletedAt() == null)
+                .orElseThrow(() -> AuthException.notFound("Organization not found"));
         
-        return mapToResponse(organization);
+        return mapToResponse(organization, statsService.getSummary(organization.getId()));
     }
     
     @Transactional
     public OrganizationResponse updateOrganization(UUID id, CreateOrganizationRequest request) {
-        Organization organization = organizationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Organization not found"));
+        Organization organization = findOrganization(id);
         
         // Check if name is already taken by another organization
         if (!organization.getName().equals(request.getName()) && 
             organizationRepository.existsByName(request.getName())) {
-            throw new RuntimeException("Organization name already exists");
+            throw AuthException.conflict("Organization name already exists");
         }
         
         organization.setName(request.getName());
         organization.setDescription(request.getDescription());
         
+        // Turning eager provisioning on backfills every existing client app
+        boolean enableEager = Boolean.TRUE.equals(request.getEagerProvisioning()) && !organization.isEagerProvisioning();
+        if (request.getEagerProvisioning() != null) {
+            organization.setEagerProvisioning(request.getEagerProvisioning());
+        }
+        
         organization = organizationRepository.save(organization);
+        // Client app lookups carry the organization's name and provisioning mode
+        UUID updatedId = organization.getId();
+        ProvisioningService.afterCommit(() -> apiKeyStore.evictOrganization(updatedId));
+        if (enableEager) {
+            UUID organizationId = organization.getId();
+            ProvisioningService.afterCommit(() -> provisioningService.backfillOrganization(organizationId));
+        }
         
-        return mapToResponse(organization);
+        return mapToResponse(organization, statsService.getSummary(organization.getId()));
     }
     
+    /**
+     * Disables the organization's API keys right away and removes its data in a background job.
+     */
     @Transactional
-    public void deleteOrganization(UUID id) {
-        Organization organization = organizationRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Organization not found"));
+    public DeletionJobResponse deleteOrganization(UUID id) {
+        Organization organization = findOrganization(id);
+        
+        LocalDateTime now = LocalDateTime.now();
+        organization.setOrgOwnerApiKey(disabledApiKey(organization.getId()));
+        organization.setDeletedAt(now);
+        organizationRepository.save(organization);
+        clientAppRepository.disableByOrganizationId(organization.getId(), now);
+        UUID organizationId = organization.getId();
+        ProvisioningService.afterCommit(() -> apiKeyPrincipalCache.evictOrganization(organizationId));
         
-        organizationRepository.delete(organization);
+        return scheduleDeletion(DeletionJob.TargetType.ORGANIZATION, organization.getId(), organization.getId());
     }
     
     @Transactional
     public ClientAppResponse createClientApp(UUID organizationId, CreateClientAppRequest request) {
-        Organization organization = organizationRepository.findById(organizationId)
-                .orElseThrow(() -> new RuntimeException("Organization not found"));
+        Organization organization = findOrganization(organizationId);
         
-        if (clientAppRepository.existsByNameAndOrganization(request.getName(), organization)) {
-            throw new RuntimeException("Client app name already exists in this organization");
+        if (clientAppRepository.existsByNameAndOrganizationAndDeletedAtIsNull(request.getName(), organization)) {
+            throw AuthException.conflict("Client app name already exists in this organization");
         }
         
         ClientApp clientApp = new ClientApp();
         clientApp.setName(request.getName());
         clientApp.setDescription(request.getDescription());
+        clientApp.setIncludeMetadataInToken(Boolean.TRUE.equals(request.getIncludeMetadataInToken()));
         clientApp.setOrganization(organization);
         
         clientApp = clientAppRepository.save(clientApp);
+        statsService.clientAppCreated(organization.getId());
+        if (organization.isEagerProvisioning()) {
+            UUID clientAppId = clientApp.getId();
+            ProvisioningService.afterCommit(() -> provisioningService.backfillClientApp(clientAppId));
+        }
         
         return mapToClientAppResponse(clientApp);
     }
     
     @Transactional(readOnly = true)
     public List<ClientAppResponse> getClientAppsByOrganization(UUID organizationId) {
-        return clientAppRepository.findByOrganizationId(organizationId)
+        return clientAppRepository.findByOrganizationIdAndDeletedAtIsNull(organizationId)
                 .stream()
                 .map(this::mapToClientAppResponse)
                 .collect(Collectors.toList());
@@ -120,8 +175,7 @@ public class OrganizationService {
     
     @Transactional(readOnly = true)
     public ClientAppResponse getClientAppById(UUID id) {
-        ClientApp clientApp = clientAppRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Client app not found"));
+        ClientApp clientApp = findClientApp(id);
         
         return mapToClientAppResponse(clientApp);
     }
@@ -129,44 +183,105 @@ public class OrganizationService {
     @Transactional(readOnly = true)
     public ClientAppResponse getClientAppByApiKey(String apiKey) {
         ClientApp clientApp = clientAppRepository.findByClientAppApiKey(apiKey)
-                .orElseThrow(() -> new RuntimeException("Client app not found"));
+                .filter(app -> app.getDeletedAt() == null)
+                .orElseThrow(() -> AuthException.notFound("Client app not found"));
         
         return mapToClientAppResponse(clientApp);
     }
     
     @Transactional
     public ClientAppResponse updateClientApp(UUID id, CreateClientAppRequest request) {
-        ClientApp clientApp = clientAppRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Client app not found"));
+        ClientApp clientApp = findClientApp(id);
         
         // Check if name is already taken by another client app in the same organization
         if (!clientApp.getName().equals(request.getName()) && 
-            clientAppRepository.existsByNameAndOrganization(request.getName(), clientApp.getOrganization())) {
-            throw new RuntimeException("Client app name already exists in this organization");
+            clientAppRepository.existsByNameAndOrganizationAndDeletedAtIsNull(request.getName(), clientApp.getOrganization())) {
+            throw AuthException.conflict("Client app name already exists in this organization");
         }
         
         clientApp.setName(request.getName());
         clientApp.setDescription(request.getDescription());
+        if (request.getIncludeMetadataInToken() != null) {
+            clientApp.setIncludeMetadataInToken(request.getIncludeMetadataInToken());
+        }
         
         clientApp = clientAppRepository.save(clientApp);
+        UUID clientAppId = clientApp.getId();
+        ProvisioningService.afterCommit(() -> apiKeyStore.evictClientApp(clientAppId));
         
         return mapToClientAppResponse(clientApp);
     }
     
+    /**
+     * Disables the client app's API key right away and removes its users in a background job.
+     */
     @Transactional
-    public void deleteClientApp(UUID id) {
-        ClientApp clientApp = clientAppRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Client app not found"));
+    public DeletionJobResponse deleteClientApp(UUID id) {
+        ClientApp clientApp = findClientApp(id);
         
-        clientAppRepository.delete(clientApp);
+        clientApp.setClientAppApiKey(disabledApiKey(clientApp.getId()));
+        clientApp.setDeletedAt(LocalDateTime.now());
+        clientAppRepository.save(clientApp);
+        statsService.clientAppDeleted(clientApp.getOrganization().getId());
+        UUID clientAppId = clientApp.getId();
+        ProvisioningService.afterCommit(() -> apiKeyPrincipalCache.evictClientApp(clientAppId));
+        
+        return scheduleDeletion(DeletionJob.TargetType.CLIENT_APP, clientApp.getId(), clientApp.getOrganization().getId());
     }
     
-    private OrganizationResponse mapToResponse(Organization organization) {
+    @Transactional(readOnly = true)
+    public OrganizationStatsResponse getOrganizationStats(UUID organizationId, int days) {
+        Organization organization = findOrganization(organizationId);
+        
+        return statsService.getStats(organization.getId(), days);
+    }
+    
+    @Transactional(readOnly = true)
+    public DeletionJobResponse getDeletionJob(UUID jobId) {
+        DeletionJob job = deletionJobRepository.findById(jobId)
+                .orElseThrow(() -> AuthException.notFound("Deletion job not found"));
+        
+        return mapToDeletionJobResponse(job);
+    }
+    
+    private DeletionJobResponse scheduleDeletion(DeletionJob.TargetType targetType, UUID targetId, UUID organizationId) {
+        DeletionJob job = new DeletionJob();
+        job.setTargetType(targetType);
+        job.setTargetId(targetId);
+        job.setOrganizationId(organizationId);
+        job.setStatus(DeletionJob.Status.PENDING);
+        job = deletionJobRepository.save(job);
+        
+        UUID jobId = job.getId();
+        ProvisioningService.afterCommit(() -> deletionService.submit(jobId));
+        return mapToDeletionJobResponse(job);
+    }
+    
+    // Not matched by the API key filter, which only accepts org_ and app_ keys
+    private static String disabledApiKey(UUID id) {
+        return "del_" + id.toString().replace("-", "");
+    }
+    
+    private Organization findOrganization(UUID id) {
+        return organizationRepository.findById(id)
+                .filter(organization -> organization.getDeletedAt() == null)
+                .orElseThrow(() -> AuthException.notFound("Organization not found"));
+    }
+    
+    private ClientApp findClientApp(UUID id) {
+        return clientAppRepository.findById(id)
+                .filter(clientApp -> clientApp.getDeletedAt() == null)
+                .orElseThrow(() -> AuthException.notFound("Client app not found"));
+    }
+    
+    private OrganizationResponse mapToResponse(Organization organization, OrganizationStatsResponse stats) {
         return OrganizationResponse.builder()
                 .id(organization.getId())
                 .name(organization.getName())
                 .description(organization.getDescription())
                 .orgOwnerApiKey(organization.getOrgOwnerApiKey())
+                .eagerProvisioning(organization.isEagerProvisioning())
+                .stats(stats)
                 .createdAt(organization.getCreatedAt())
                 .updatedAt(organization.getUpdatedAt())
                 .build();
@@ -178,10 +293,26 @@ public class OrganizationService {
                 .name(clientApp.getName())
                 .description(clientApp.getDescription())
                 .clientAppApiKey(clientApp.getClientAppApiKey())
+                .includeMetadataInToken(Boolean.TRUE.equals(clientApp.getIncludeMetadataInToken()))
                 .organizationId(clientApp.getOrganization().getId())
                 .organizationName(clientApp.getOrganization().getName())
                 .createdAt(clientApp.getCreatedAt())
                 .updatedAt(clientApp.getUpdatedAt())
                 .build();
     }
+    
+    private DeletionJobResponse mapToDeletionJobResponse(DeletionJob job) {
+        return DeletionJobResponse.builder()
+                .id(job.getId())
+                .targetType(job.getTargetType().name())
+                .targetId(job.getTargetId())
+                .status(job.getStatus().name())
+                .phase(job.getPhase())
+                .rowsDeleted(job.getRowsDeleted())
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.HashingProperties;
+import com.devang.authentication.exception.AuthException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds how much BCrypt runs at once. BCrypt is the most expensive thing the service does, so
+ * under a connection storm the pool caps how many cores it can take. The request thread still
+ * blocks until its hash is done (up to hashing.timeout); it is not freed for other requests. What
+ * the pool adds is that once its queue is full, further logins/signups are rejected immediately
+ * instead of all hashing at once and slowing every request down.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final HashingProperties hashingProperties;
+    private final ExecutorService executor;
+
+    // Hash of a random password nobody knows, verified when the looked-up user does not exist
+    private final String dummyHash;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  HashingProperties hashingProperties,
+                                  MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.hashingProperties = hashingProperties;
+
+        int poolSize = hashingProperties.getPoolSize() > 0
+                ? hashingProperties.getPoolSize()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(hashingProperties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "password.hashing", Collections.emptyList());
+        this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Runs a full verification against a precomputed hash through the same pool, so a login for a
+     * username that does not exist costs the same as one with a wrong password. Always false.
+     */
+    public boolean matchesDummy(CharSequence rawPassword) {
+        submit(() -> passwordEncoder.matches(rawPassword, dummyHash));
+        return false;
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw AuthException.serviceUnavailable("Server is busy, please retry");
+        }
+
+        try {
+            return future.get(hashingProperties.getTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw AuthException.serviceUnavailable("Server is busy, please retry");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Password hashing interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
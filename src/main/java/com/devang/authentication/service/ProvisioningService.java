@@ -0,0 +1,131 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.ProvisioningProperties;
+import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Eager provisioning for organizations that opt in: client app users get a membership in every client
+ * app of their organization in the background, so SSO exchange never has to insert on the request
+ * path. All inserts are set-based and skip usernames the target app already has.
+ */
+@Service
+public class ProvisioningService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProvisioningService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Autowired
+    private ProvisioningProperties provisioningProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private StatsService statsService;
+
+    /**
+     * Runs the task once the current transaction commits, so background work sees the new rows. A
+     * task handed to a saturated executor is dropped with a warning rather than failing a request
+     * whose changes are already committed.
+     */
+    public static void afterCommit(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runCommitted(task);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runCommitted(task);
+            }
+        });
+    }
+
+    private static void runCommitted(Runnable task) {
+        try {
+            task.run();
+        } catch (TaskRejectedException e) {
+            log.warn("Background task after commit was rejected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a freshly signed-up user to every other client app of its organization.
+     */
+    @Async("provisioningExecutor")
+    public void provisionUserAcrossOrganization(UUID userId) {
+        try {
+            Integer inserted = transactionTemplate.execute(status -> userRepository.provisionIntoOrganizationApps(userId));
+            log.debug("Eagerly provisioned user {} into {} client apps", userId, inserted);
+        } catch (Exception e) {
+            // SSO exchange still provisions lazily, so a failure here only costs latency later
+            log.warn("Eager provisioning of user {} failed: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Adds every identity of the organization to the given client app, one batch of usernames
+     * per transaction.
+     */
+    @Async("provisioningExecutor")
+    public void backfillClientApp(UUID clientAppId) {
+        backfill(clientAppId);
+    }
+
+    /**
+     * Backfills every client app of the organization, e.g. right after eager provisioning is enabled.
+     */
+    @Async("provisioningExecutor")
+    public void backfillOrganization(UUID organizationId) {
+        for (ClientApp clientApp : clientAppRepository.findByOrganizationId(organizationId)) {
+            backfill(clientApp.getId());
+        }
+    }
+
+    private void backfill(UUID clientAppId) {
+        try {
+            ClientApp clientApp = clientAppRepository.findById(clientAppId).orElse(null);
+            if (clientApp == null || clientApp.getDeletedAt() != null) {
+                return;
+            }
+            UUID organizationId = clientApp.getOrganization().getId();
+
+            String after = "";
+            int total = 0;
+            while (true) {
+                List<String> usernames = userRepository.findUsernamesInOrganizationAfter(
+                        organizationId, after, provisioningProperties.getBatchSize());
+                if (usernames.isEmpty()) {
+                    break;
+                }
+                Integer inserted = transactionTemplate.execute(status ->
+                        userRepository.provisionUsernamesIntoClientApp(usernames, organizationId, clientAppId));
+                total += inserted != null ? inserted : 0;
+                statsService.membershipsAdded(organizationId, clientAppId, inserted != null ? inserted : 0);
+                after = usernames.get(usernames.size() - 1);
+            }
+            log.info("Backfilled {} users into client app {}", total, clientAppId);
+        } catch (Exception e) {
+            log.warn("Backfill of client app {} failed: {}", clientAppId, e.getMessage());
+        }
+    }
+}
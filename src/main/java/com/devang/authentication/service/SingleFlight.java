@@ -0,0 +1,56 @@
+package com.devang.authentication.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent loads of the same key into one: the first caller runs the loader and every
+ * caller arriving while it is in flight waits for and shares its result, or its exception. Nothing
+ * is kept once the load completes, so this only absorbs bursts such as a client app cold-starting
+ * with hundreds of requests on one API key; caching is left to the caller. Results are handed to
+ * several threads, so loaders return immutable values such as ids or snapshots, never JPA entities,
+ * which belong to the persistence context of the request that loaded them. Waiters are counted in
+ * auth.lookups.coalesced.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SingleFlight(String lookup, MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("auth.lookups.coalesced")
+                .description("Lookups that waited for an identical one in flight instead of querying")
+                .tag("lookup", lookup)
+                .register(meterRegistry);
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
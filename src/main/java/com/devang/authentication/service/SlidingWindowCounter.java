@@ -0,0 +1,97 @@
+package com.devang.authentication.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate per-key event counter over a sliding time window. Each time bucket holds a
+ * count-min sketch, so memory is fixed at {@code buckets * depth * width} ints no matter how many
+ * distinct keys are seen; estimates can only over-count. Buckets are recycled lazily by the first
+ * writer that observes a new time slot, and all updates are lock-free.
+ */
+class SlidingWindowCounter {
+
+    private final int buckets;
+    private final int depth;
+    private final int width;
+    private final int mask;
+    private final long bucketMillis;
+    private final long seed;
+    private final AtomicIntegerArray[] counters;
+    private final AtomicLongArray bucketSlots;
+
+    SlidingWindowCounter(long windowMillis, int buckets, int width, int depth) {
+        this.buckets = buckets;
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = this.width - 1;
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        // Random seed so attacker-chosen keys cannot be crafted to collide with a victim's
+        this.seed = ThreadLocalRandom.current().nextLong();
+        this.counters = new AtomicIntegerArray[buckets];
+        this.bucketSlots = new AtomicLongArray(buckets);
+        for (int i = 0; i < buckets; i++) {
+            counters[i] = new AtomicIntegerArray(depth * this.width);
+            bucketSlots.set(i, -1);
+        }
+    }
+
+    void increment(String key, long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        AtomicIntegerArray bucket = bucketFor(slot);
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            bucket.incrementAndGet(row * width + ((h1 + row * h2) & mask));
+        }
+    }
+
+    int estimate(String key, long nowMillis) {
+        long slot = nowMillis / bucketMillis;
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + ((h1 + row * h2) & mask);
+            int sum = 0;
+            for (int b = 0; b < buckets; b++) {
+                // Only buckets whose slot still lies inside the window contribute
+                if (slot - bucketSlots.get(b) < buckets) {
+                    sum += counters[b].get(index);
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    private AtomicIntegerArray bucketFor(long slot) {
+        int index = (int) (slot % buckets);
+        long current = bucketSlots.get(index);
+        if (current != slot && current < slot && bucketSlots.compareAndSet(index, current, slot)) {
+            // This thread won the rotation; increments racing with the reset may be lost, which
+            // only ever makes the estimate lower by a handful of events
+            AtomicIntegerArray bucket = counters[index];
+            for (int i = 0; i < bucket.length(); i++) {
+                bucket.set(i, 0);
+            }
+        }
+        return counters[index];
+    }
+
+    private long hash(String key) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
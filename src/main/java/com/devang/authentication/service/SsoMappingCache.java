@@ -0,0 +1,36 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.SsoProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Remembers which user row a source user maps to in a target client app, so repeat SSO exchanges
+ * can skip the app, source user and username lookups. Entries are only hints: the caller re-checks
+ * the loaded target user against the requested API key and organization and evicts on mismatch.
+ */
+@Component
+public class SsoMappingCache {
+
+    @Autowired
+    private SsoProperties ssoProperties;
+
+    private final BoundedCache<MappingKey, UUID> mappings = new BoundedCache<>(() -> ssoProperties.getMappingCacheMaxSize());
+
+    public UUID get(UUID sourceUserId, String targetClientAppApiKey) {
+        return mappings.get(new MappingKey(sourceUserId, targetClientAppApiKey));
+    }
+
+    public void put(UUID sourceUserId, String targetClientAppApiKey, UUID targetUserId) {
+        mappings.put(new MappingKey(sourceUserId, targetClientAppApiKey), targetUserId);
+    }
+
+    public void evict(UUID sourceUserId, String targetClientAppApiKey) {
+        mappings.remove(new MappingKey(sourceUserId, targetClientAppApiKey));
+    }
+
+    private record MappingKey(UUID sourceUserId, String targetClientAppApiKey) {
+    }
+}
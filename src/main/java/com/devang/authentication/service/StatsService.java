@@ -0,0 +1,339 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.StatsProperties;
+import com.devang.authentication.dto.response.ClientAppStatsResponse;
+import com.devang.authentication.dto.response.OrganizationStatsResponse;
+import com.devang.authentication.entity.ClientAppStats;
+import com.devang.authentication.entity.DailyLoginStats;
+import com.devang.authentication.entity.OrganizationStats;
+import com.devang.authentication.repository.ClientAppStatsRepository;
+import com.devang.authentication.repository.DailyLoginStatsRepository;
+import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.repository.OrganizationStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Organization dashboard counters. Writers only bump in-memory adders (after their transaction
+ * commits); a scheduled flush folds the accumulated deltas into the stats tables with one upsert
+ * per touched organization, client app and day. Reads are primary-key lookups regardless of tenant
+ * size. A periodic recount from the source tables corrects drift the deltas cannot see, such as
+ * sessions that simply expire or users provisioned in bulk.
+ *
+ * Only one instance recounts at a time, under a Postgres advisory lock, and a recount another
+ * instance finished less than half an interval ago is not repeated. A recount stamps the rows it
+ * overwrites, and deltas an instance buffered since before that stamp are skipped when flushed,
+ * because the recount already counted them. Changes made on other instances during the flush
+ * interval around a recount can therefore be missed; the next recount picks them up.
+ */
+@Service
+public class StatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(StatsService.class);
+
+    private static final int MAX_DAYS = 90;
+
+    // Postgres advisory lock key held by the instance that is recounting
+    private static final long RECONCILE_LOCK = 0x5354415453L;
+
+    @Autowired
+    private OrganizationStatsRepository organizationStatsRepository;
+
+    @Autowired
+    private ClientAppStatsRepository clientAppStatsRepository;
+
+    @Autowired
+    private DailyLoginStatsRepository dailyLoginStatsRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatsProperties statsProperties;
+
+    private final ConcurrentMap<UUID, OrgCounters> organizations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, AppCounters> clientApps = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DayKey, LongAdder> dailyLogins = new ConcurrentHashMap<>();
+
+    // When the buffered deltas started accumulating; only moves on once they are written
+    private LocalDateTime bufferedSince = LocalDateTime.now();
+
+    public void identityCreated(UUID organizationId) {
+        ProvisioningService.afterCommit(() -> org(organizationId).users.increment());
+    }
+
+    public void membershipsAdded(UUID organizationId, UUID clientAppId, long count) {
+        if (count > 0) {
+            ProvisioningService.afterCommit(() -> app(clientAppId, organizationId).users.add(count));
+        }
+    }
+
+    public void clientAppCreated(UUID organizationId) {
+        ProvisioningService.afterCommit(() -> org(organizationId).clientApps.increment());
+    }
+
+    public void clientAppDeleted(UUID organizationId) {
+        ProvisioningService.afterCommit(() -> org(organizationId).clientApps.decrement());
+    }
+
+    // clientAppId is null for org owner sessions
+    public void sessionOpened(UUID organizationId, UUID clientAppId) {
+        ProvisioningService.afterCommit(() -> addSessions(organizationId, clientAppId, 1));
+    }
+
+    public void sessionEnded(UUID organizationId, UUID clientAppId) {
+        ProvisioningService.afterCommit(() -> addSessions(organizationId, clientAppId, -1));
+    }
+
+    public void loginSucceeded(UUID organizationId, UUID clientAppId) {
+        ProvisioningService.afterCommit(() -> {
+            dailyLogins.computeIfAbsent(new DayKey(organizationId, today()), k -> new LongAdder()).increment();
+            if (clientAppId != null) {
+                app(clientAppId, organizationId).logins.increment();
+            }
+        });
+    }
+
+    public OrganizationStatsResponse getSummary(UUID organizationId) {
+        OrganizationStats stats = organizationStatsRepository.findById(organizationId).orElse(null);
+        Long loginsToday = dailyLoginStatsRepository.findByOrganizationIdAndDay(organizationId, today())
+                .map(DailyLoginStats::getLogins)
+                .orElse(0L);
+        return summaryBuilder(organizationId, stats, loginsToday).build();
+    }
+
+    public Map<UUID, OrganizationStatsResponse> getSummaries(Collection<UUID> organizationIds) {
+        Map<UUID, OrganizationStats> stats = organizationStatsRepository.findAllById(organizationIds).stream()
+                .collect(Collectors.toMap(OrganizationStats::getOrganizationId, s -> s));
+        Map<UUID, OrganizationStatsResponse> summaries = new HashMap<>();
+        for (UUID organizationId : organizationIds) {
+            summaries.put(organizationId, summaryBuilder(organizationId, stats.get(organizationId), null).build());
+        }
+        return summaries;
+    }
+
+    /**
+     * Full dashboard: headline counters, logins for the last {@code days} days and per-app counters.
+     */
+    public OrganizationStatsResponse getStats(UUID organizationId, int days) {
+        int window = Math.max(1, Math.min(days, MAX_DAYS));
+        LocalDate from = today().minusDays(window - 1);
+
+        Map<LocalDate, Long> logins = new TreeMap<>();
+        for (int i = 0; i < window; i++) {
+            logins.put(from.plusDays(i), 0L);
+        }
+        for (DailyLoginStats day : dailyLoginStatsRepository.findByOrganizationIdAndDayGreaterThanEqualOrderByDayAsc(organizationId, from)) {
+            logins.put(day.getDay(), day.getLogins());
+        }
+
+        List<ClientAppStatsResponse> apps = clientAppStatsRepository.findByOrganizationId(organizationId).stream()
+                .map(app -> ClientAppStatsResponse.builder()
+                        .clientAppId(app.getClientAppId())
+                        .users(app.getUsers())
+                        .activeSessions(Math.max(0, app.getActiveSessions()))
+                        .logins(app.getLogins())
+                        .updatedAt(app.getUpdatedAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        OrganizationStats stats = organizationStatsRepository.findById(organizationId).orElse(null);
+        return summaryBuilder(organizationId, stats, logins.get(today()))
+                .dailyLogins(logins)
+                .clientAppStats(apps)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${stats.flush-interval:5000}")
+    public synchronized void flush() {
+        LocalDateTime since = bufferedSince;
+        LocalDateTime drainedAt = LocalDateTime.now();
+        List<Runnable> writes = new ArrayList<>();
+        List<Runnable> undo = new ArrayList<>();
+
+        organizations.forEach((organizationId, counters) -> {
+            long users = counters.users.sumThenReset();
+            long apps = counters.clientApps.sumThenReset();
+            long sessions = counters.activeSessions.sumThenReset();
+            if (users != 0 || apps != 0 || sessions != 0) {
+                writes.add(() -> organizationStatsRepository.addDeltas(organizationId, users, apps, sessions, since));
+                undo.add(() -> {
+                    counters.users.add(users);
+                    counters.clientApps.add(apps);
+                    counters.activeSessions.add(sessions);
+                });
+            }
+        });
+        clientApps.forEach((clientAppId, counters) -> {
+            long users = counters.users.sumThenReset();
+            long sessions = counters.activeSessions.sumThenReset();
+            long logins = counters.logins.sumThenReset();
+            if (users != 0 || sessions != 0 || logins != 0) {
+                writes.add(() -> clientAppStatsRepository.addDeltas(
+                        clientAppId, counters.organizationId, users, sessions, logins, since));
+                undo.add(() -> {
+                    counters.users.add(users);
+                    counters.activeSessions.add(sessions);
+                    counters.logins.add(logins);
+                });
+            }
+        });
+        LocalDate today = today();
+        dailyLogins.forEach((key, adder) -> {
+            long logins = adder.sumThenReset();
+            if (logins != 0) {
+                writes.add(() -> dailyLoginStatsRepository.addLogins(key.organizationId(), key.day(), logins));
+                undo.add(() -> adder.add(logins));
+            }
+        });
+        // Past days no longer receive increments once their final deltas are drained
+        dailyLogins.keySet().removeIf(key -> key.day().isBefore(today));
+
+        if (writes.isEmpty()) {
+            bufferedSince = drainedAt;
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writes.forEach(Runnable::run));
+            bufferedSince = drainedAt;
+        } catch (Exception e) {
+            // Keep the deltas for the next flush rather than losing them
+            undo.forEach(Runnable::run);
+            log.warn("Flushing {} stats deltas failed: {}", writes.size(), e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${stats.flush-interval:5000}", fixedDelayString = "${stats.reconcile-interval:600000}")
+    public synchronized void reconcile() {
+        flush();
+        try {
+            // Session level lock, held on this connection while the recount runs on others
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                    lock.setLong(1, RECONCILE_LOCK);
+                    try (ResultSet result = lock.executeQuery()) {
+                        if (!result.next() || !result.getBoolean(1)) {
+                            return null;
+                        }
+                    }
+                }
+                try {
+                    recountIfDue();
+                } finally {
+                    try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                        unlock.setLong(1, RECONCILE_LOCK);
+                        unlock.execute();
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Recounting stats failed: {}", e.getMessage());
+        }
+    }
+
+    private void recountIfDue() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime last = organizationStatsRepository.findLastRecountedAt();
+        if (last != null && last.isAfter(now.minusNanos(statsProperties.getReconcileInterval() * 500_000))) {
+            return;
+        }
+        for (UUID organizationId : organizationRepository.findActiveIds()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    organizationStatsRepository.recount(organizationId, now);
+                    clientAppStatsRepository.recountOrganization(organizationId, now);
+                });
+            } catch (Exception e) {
+                log.warn("Recounting stats of organization {} failed: {}", organizationId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops buffered deltas of an organization that is being deleted, so a late flush cannot
+     * recreate its stats rows.
+     */
+    public void forgetOrganization(UUID organizationId) {
+        organizations.remove(organizationId);
+        clientApps.values().removeIf(counters -> organizationId.equals(counters.organizationId));
+        dailyLogins.keySet().removeIf(key -> organizationId.equals(key.organizationId()));
+    }
+
+    public void forgetClientApp(UUID clientAppId) {
+        clientApps.remove(clientAppId);
+    }
+
+    private void addSessions(UUID organizationId, UUID clientAppId, long delta) {
+        org(organizationId).activeSessions.add(delta);
+        if (clientAppId != null) {
+            app(clientAppId, organizationId).activeSessions.add(delta);
+        }
+    }
+
+    private OrganizationStatsResponse.OrganizationStatsResponseBuilder summaryBuilder(
+            UUID organizationId, OrganizationStats stats, Long loginsToday) {
+        return OrganizationStatsResponse.builder()
+                .organizationId(organizationId)
+                .users(stats != null ? stats.getUsers() : 0)
+                .clientApps(stats != null ? stats.getClientApps() : 0)
+                .activeSessions(stats != null ? Math.max(0, stats.getActiveSessions()) : 0)
+                .loginsToday(loginsToday != null ? loginsToday : 0)
+                .updatedAt(stats != null ? stats.getUpdatedAt() : null);
+    }
+
+    private OrgCounters org(UUID organizationId) {
+        return organizations.computeIfAbsent(organizationId, id -> new OrgCounters());
+    }
+
+    private AppCounters app(UUID clientAppId, UUID organizationId) {
+        return clientApps.computeIfAbsent(clientAppId, id -> new AppCounters(organizationId));
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static final class OrgCounters {
+        final LongAdder users = new LongAdder();
+        final LongAdder clientApps = new LongAdder();
+        final LongAdder activeSessions = new LongAdder();
+    }
+
+    private static final class AppCounters {
+        final UUID organizationId;
+        final LongAdder users = new LongAdder();
+        final LongAdder activeSessions = new LongAdder();
+        final LongAdder logins = new LongAdder();
+
+        AppCounters(UUID organizationId) {
+            this.organizationId = organizationId;
+        }
+    }
+
+    private record DayKey(UUID organizationId, LocalDate day) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.JwtProperties.ClaimProfile;
+import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.entity.OrgOwner;
+import com.devang.authentication.entity.Organization;
+import com.devang.authentication.entity.User;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builds and reads access token claims for both claim profiles. Readers accept either naming so
+ * tokens issued before a profile switch keep working until they expire.
+ */
+public final class TokenClaims {
+
+    public static final String USER_TYPE_ORG_OWNER = "ORG_OWNER";
+    public static final String USER_TYPE_CLIENT_USER = "CLIENT_USER";
+
+    // Standard profile
+    public static final String USER_ID = "userId";
+    public static final String USERNAME = "username";
+    public static final String USER_TYPE = "userType";
+    public static final String ORGANIZATION_ID = "organizationId";
+    public static final String ORGANIZATION_NAME = "organizationName";
+    public static final String CLIENT_APP_ID = "clientAppId";
+    public static final String USER_METADATA = "user_metadata";
+
+    // Compact profile
+    public static final String SUB = "sub";
+    public static final String USR = "usr";
+    public static final String TYP = "typ";
+    public static final String ORG = "org";
+    public static final String APP = "app";
+    public static final String MD = "md";
+
+    private TokenClaims() {
+    }
+
+    public static Map<String, Object> forOrgOwner(ClaimProfile profile, OrgOwner owner, Organization org) {
+        Map<String, Object> claims = new HashMap<>();
+        if (profile == ClaimProfile.COMPACT) {
+            claims.put(SUB, owner.getId().toString());
+            claims.put(USR, owner.getUsername());
+            claims.put(TYP, USER_TYPE_ORG_OWNER);
+            if (org != null) {
+                claims.put(ORG, org.getId().toString());
+            }
+            return claims;
+        }
+
+        claims.put(USER_ID, owner.getId());
+        claims.put(USERNAME, owner.getUsername());
+        claims.put(USER_TYPE, USER_TYPE_ORG_OWNER);
+        if (org != null) {
+            claims.put(ORGANIZATION_ID, org.getId());
+            claims.put(ORGANIZATION_NAME, org.getName());
+        }
+        return claims;
+    }
+
+    public static Map<String, Object> forClientUser(ClaimProfile profile, User user, ClientApp clientApp) {
+        Organization org = clientApp.getOrganization();
+        // The organization name is only read for the standard profile, so compact tokens never load it
+        return forClientUser(profile, user.getId(), user.getUsername(), user.getIdentity().getUserMetadata(),
+                org.getId(), profile == ClaimProfile.COMPACT ? null : org.getName(),
+                clientApp.getId(), clientApp.getIncludeMetadataInToken());
+    }
+
+    public static Map<String, Object> forClientUser(ClaimProfile profile, UUID userId, String username,
+                                                    Map<String, Object> metadata, ClientAppSnapshot clientApp) {
+        return forClientUser(profile, userId, username, metadata, clientApp.organizationId(),
+                clientApp.organizationName(), clientApp.id(), clientApp.includeMetadataInToken());
+    }
+
+    private static Map<String, Object> forClientUser(ClaimProfile profile, UUID userId, String username,
+                                                     Map<String, Object> metadata, UUID organizationId,
+                                                     String organizationName, UUID clientAppId,
+                                                     Boolean includeMetadataInToken) {
+        Map<String, Object> claims = new HashMap<>();
+        if (profile == ClaimProfile.COMPACT) {
+            claims.put(SUB, userId.toString());
+            claims.put(USR, username);
+            claims.put(TYP, USER_TYPE_CLIENT_USER);
+            claims.put(ORG, organizationId.toString());
+            claims.put(APP, clientAppId.toString());
+            if (Boolean.TRUE.equals(includeMetadataInToken) && metadata != null) {
+                claims.put(MD, metadata);
+            }
+            return claims;
+        }
+
+        claims.put(USER_ID, userId);
+        claims.put(USERNAME, username);
+        claims.put(USER_TYPE, USER_TYPE_CLIENT_USER);
+        claims.put(ORGANIZATION_ID, organizationId);
+        claims.put(ORGANIZATION_NAME, organizationName);
+        claims.put(CLIENT_APP_ID, clientAppId);
+        if (metadata != null) {
+            claims.put(USER_METADATA, metadata);
+        }
+        return claims;
+    }
+
+    /**
+     * Removes the embedded metadata claim, if any. Returns true when something was removed.
+     */
+    public static boolean stripMetadata(Map<String, Object> claims) {
+        boolean removed = claims.remove(USER_METADATA) != null;
+        return claims.remove(MD) != null || removed;
+    }
+
+    public static String userId(Map<String, Object> claims) {
+        return read(claims, SUB, USER_ID);
+    }
+
+    public static String username(Map<String, Object> claims) {
+        return read(claims, USR, USERNAME);
+    }
+
+    public static String userType(Map<String, Object> claims) {
+        return read(claims, TYP, USER_TYPE);
+    }
+
+    public static String organizationId(Map<String, Object> claims) {
+        return read(claims, ORG, ORGANIZATION_ID);
+    }
+
+    public static String clientAppId(Map<String, Object> claims) {
+        return read(claims, APP, CLIENT_APP_ID);
+    }
+
+    private static String read(Map<String, Object> claims, String compactName, String standardName) {
+        Object value = claims.get(compactName);
+        if (value == null) {
+            value = claims.get(standardName);
+        }
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.entity.Identity;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener on {@link Identity} that drops the cached userinfo entries when the row changes.
+ * Evicts immediately and again after commit, so a concurrent reader cannot re-cache the
+ * pre-commit state.
+ */
+@Component
+public class UserInfoCacheListener {
+
+    @Autowired
+    private UserInfoService userInfoService;
+
+    @PostUpdate
+    @PostRemove
+    public void onIdentityChanged(Identity identity) {
+        userInfoService.evictIdentity(identity.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userInfoService.evictIdentity(identity.getId());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.UserInfoProperties;
+import com.devang.authentication.dto.response.UserInfoResponse;
+import com.devang.authentication.entity.Identity;
+import com.devang.authentication.entity.User;
+import com.devang.authentication.exception.AuthException;
+import com.devang.authentication.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Serves the userinfo profile from a per-user cache. Entries are evicted by
+ * {@link UserInfoCacheListener} whenever the shared identity row changes, and expire after
+ * userinfo.cache-ttl to bound staleness from writes made on other replicas.
+ */
+@Service
+public class UserInfoService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserInfoProperties userInfoProperties;
+
+    private final BoundedCache<UUID, CachedUserInfo> cache = new BoundedCache<>(() -> userInfoProperties.getCacheMaxSize());
+
+    @Transactional(readOnly = true)
+    public CachedUserInfo getUserInfo(UUID userId) {
+        CachedUserInfo cached = cache.get(userId);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.cachedAt() < userInfoProperties.getCacheTtl()) {
+            return cached;
+        }
+
+        User user = userRepository.findWithIdentityById(userId)
+                .orElseThrow(() -> AuthException.notFound("User not found"));
+        Identity identity = user.getIdentity();
+
+        UserInfoResponse info = UserInfoResponse.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(identity.getEmail())
+                .firstName(identity.getFirstName())
+                .lastName(identity.getLastName())
+                .user_metadata(identity.getUserMetadata())
+                .organizationId(user.getOrganization().getId())
+                .clientAppId(user.getClientApp().getId())
+                .updatedAt(identity.getUpdatedAt())
+                .build();
+
+        CachedUserInfo entry = new CachedUserInfo(info, identity.getId(),
+                etagFor(user.getId(), identity.getUpdatedAt()), now);
+        cache.put(userId, entry);
+        return entry;
+    }
+
+    // A profile change affects every membership of the identity
+    public void evictIdentity(UUID identityId) {
+        if (identityId != null) {
+            cache.removeIf(entry -> identityId.equals(entry.identityId()));
+        }
+    }
+
+    private static String etagFor(UUID userId, LocalDateTime updatedAt) {
+        long version = updatedAt != null ? updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + updatedAt.getNano() : 0;
+        return "\"" + userId + "-" + Long.toHexString(version) + "\"";
+    }
+
+    public record CachedUserInfo(UserInfoResponse info, UUID identityId, String etag, long cachedAt) {
+    }
+}
@@ -0,0 +1,191 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.WarmupProperties;
+import com.devang.authentication.dto.request.LoginRequest;
+import com.devang.authentication.dto.response.ApiResponse;
+import com.devang.authentication.dto.response.AuthResponse;
+import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.entity.Identity;
+import com.devang.authentication.entity.Organization;
+import com.devang.authentication.entity.User;
+import com.devang.authentication.repository.*;
+import com.devang.authentication.store.RefreshTokenStore;
+import com.devang.authentication.store.StoredRefreshToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exercises the login/refresh hot paths against synthetic data so the JIT has compiled them
+ * before the first real request. Runs as an {@link ApplicationRunner}, which Spring Boot calls
+ * before it publishes ReadinessState.ACCEPTING_TRAFFIC, so the readiness probe stays down until
+ * warmup has finished.
+ */
+@Service
+@ConditionalOnProperty(prefix = "warmup", name = "enabled", havingValue = "true")
+public class WarmupService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    private static final int TOKEN_ROUNDS_PER_ITERATION = 50;
+
+    @Autowired
+    private WarmupProperties warmupProperties;
+
+    @Autowired
+    private JwtUtilService jwtUtilService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IdentityRepository identityRepository;
+
+    @Autowired
+    private OrgOwnerRepository orgOwnerRepository;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(warmupProperties.getDuration());
+        String password = UUID.randomUUID().toString();
+        String passwordHash = passwordHashingService.encode(password);
+
+        int iterations = 0;
+        try {
+            do {
+                warmTokens();
+                warmSerialization();
+                passwordHashingService.matches(password, passwordHash);
+                warmRepositories(passwordHash);
+                iterations++;
+            } while (System.nanoTime() < deadline);
+        } catch (Exception e) {
+            // Warmup is best effort; a failure here must never keep the instance out of rotation
+            log.warn("Warmup aborted after {} iterations: {}", iterations, e.getMessage());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("auth.warmup.duration")
+                .description("Time spent in the startup JIT warmup")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Warmup finished: {} iterations in {} ms", iterations, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    private void warmTokens() {
+        Map<String, Object> claims = syntheticClaims();
+        for (int i = 0; i < TOKEN_ROUNDS_PER_ITERATION; i++) {
+            String access = jwtUtilService.generateAccessToken(claims);
+            jwtUtilService.extractClaims(access);
+            jwtUtilService.validateTokenAndGetClaims(jwtUtilService.generateRefreshToken());
+        }
+    }
+
+    private void warmSerialization() throws Exception {
+        AuthResponse response = AuthResponse.builder()
+                .accessToken(jwtUtilService.generateAccessToken(syntheticClaims()))
+                .refreshToken(jwtUtilService.generateRefreshToken())
+                .expiresIn(jwtUtilService.getAccessExpirationSeconds())
+                .userClaims(syntheticClaims())
+                .clientAppApiKey("app_warmup")
+                .build();
+        objectMapper.writeValueAsBytes(ApiResponse.success("Login successful", response));
+        objectMapper.readValue("{\"username\":\"warmup\",\"password\":\"warmup\"}", LoginRequest.class);
+    }
+
+    private void warmRepositories(String passwordHash) {
+        // Everything written here is rolled back, so no synthetic rows ever become visible
+        transactionTemplate.executeWithoutResult(status -> {
+            String suffix = UUID.randomUUID().toString();
+
+            Organization org = new Organization();
+            org.setName("warmup-" + suffix);
+            org.setDescription("warmup");
+            org = organizationRepository.save(org);
+
+            ClientApp clientApp = new ClientApp();
+            clientApp.setName("warmup");
+            clientApp.setOrganization(org);
+            clientApp = clientAppRepository.save(clientApp);
+
+            Identity identity = new Identity();
+            identity.setOrganization(org);
+            identity.setUsername("warmup-" + suffix);
+            identity.setPassword(passwordHash);
+            identity.setUserMetadata(Map.of("role", "WARMUP"));
+            identity = identityRepository.save(identity);
+
+            User user = new User();
+            user.setUsername(identity.getUsername());
+            user.setIdentity(identity);
+            user.setOrganization(org);
+            user.setClientApp(clientApp);
+            user = userRepository.save(user);
+
+            StoredRefreshToken rt = new StoredRefreshToken(jwtUtilService.generateRefreshToken(), user.getId(), null, null,
+                    org.getId(), clientApp.getId(),
+                    LocalDateTime.now().plusSeconds(jwtUtilService.getRefreshExpirationSeconds()), false);
+            refreshTokenStore.save(rt);
+
+            clientAppRepository.findByClientAppApiKey(clientApp.getClientAppApiKey());
+            userRepository.existsByUsernameAndClientApp(user.getUsername(), clientApp);
+            userRepository.findWithIdentityByUsernameAndClientApp(user.getUsername(), clientApp);
+            userRepository.findWithIdentityById(user.getId());
+            identityRepository.findByOrganizationAndUsername(org, user.getUsername());
+            orgOwnerRepository.findByUsername(user.getUsername());
+            organizationRepository.findByOrgOwnerApiKey(org.getOrgOwnerApiKey());
+            refreshTokenStore.findByToken(rt.token());
+            refreshTokenStore.revoke(rt.token());
+
+            status.setRollbackOnly();
+        });
+    }
+
+    private Map<String, Object> syntheticClaims() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", UUID.randomUUID());
+        claims.put("username", "warmup");
+        claims.put("userType", "CLIENT_USER");
+        claims.put("organizationId", UUID.randomUUID());
+        claims.put("organizationName", "warmup");
+        claims.put("clientAppId", UUID.randomUUID());
+        claims.put("user_metadata", Map.of("role", "WARMUP"));
+        return claims;
+    }
+}
@@ -0,0 +1,30 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.service.ClientAppSnapshot;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Lookup SPI for API keys, read by the API key filter on every authenticated request and by every
+ * login, signup and SSO exchange. Selected with lookup-store.type: {@code jpa} (default) queries the
+ * database each time, {@code memory} answers repeated lookups from a concurrent index keyed by API
+ * key. Organizations and client apps themselves stay in PostgreSQL; the index only holds what a
+ * lookup returns.
+ */
+public interface ApiKeyStore {
+
+    // Client app of a client app API key, with the organization fields token issuing reads
+    Optional<ClientAppSnapshot> findClientApp(String apiKey);
+
+    // Organization of an org owner API key
+    Optional<UUID> findOrganizationId(String apiKey);
+
+    /**
+     * Forgets what was looked up for the organization, its owner key and all of its client apps.
+     * Called once a change to them commits; a lookup still running at that point is not kept.
+     */
+    void evictOrganization(UUID organizationId);
+
+    void evictClientApp(UUID clientAppId);
+}
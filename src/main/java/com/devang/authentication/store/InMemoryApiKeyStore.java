@@ -0,0 +1,69 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.Organization;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.service.ClientAppSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Concurrent hash indexes from API key to client app and organization, filled by the first lookup
+ * of each key. Only keys that exist are indexed, so unknown keys still query the database. Nothing
+ * expires: disabling a key evicts it here, on other instances through the deletion poll of
+ * ApiKeyPrincipalCache. Changes to an app's token settings are only seen by the instance that made
+ * them, so this engine is meant for tests and single-instance edge deployments.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "lookup-store", name = "type", havingValue = "memory")
+public class InMemoryApiKeyStore implements ApiKeyStore {
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    private final LookupIndex<String, ClientAppSnapshot> clientApps = new LookupIndex<>();
+    private final LookupIndex<String, UUID> organizations = new LookupIndex<>();
+
+    @Override
+    public Optional<ClientAppSnapshot> findClientApp(String apiKey) {
+        ClientAppSnapshot app = clientApps.get(apiKey);
+        if (app != null) {
+            return Optional.of(app);
+        }
+        long epoch = clientApps.epoch();
+        Optional<ClientAppSnapshot> loaded = clientAppRepository.findWithOrganizationByClientAppApiKey(apiKey)
+                .map(ClientAppSnapshot::of);
+        loaded.ifPresent(found -> clientApps.putAfterCommit(apiKey, found, epoch));
+        return loaded;
+    }
+
+    @Override
+    public Optional<UUID> findOrganizationId(String apiKey) {
+        UUID organizationId = organizations.get(apiKey);
+        if (organizationId != null) {
+            return Optional.of(organizationId);
+        }
+        long epoch = organizations.epoch();
+        Optional<UUID> loaded = organizationRepository.findByOrgOwnerApiKey(apiKey).map(Organization::getId);
+        loaded.ifPresent(found -> organizations.putAfterCommit(apiKey, found, epoch));
+        return loaded;
+    }
+
+    @Override
+    public void evictOrganization(UUID organizationId) {
+        organizations.removeIf(organizationId::equals);
+        clientApps.removeIf(app -> organizationId.equals(app.organizationId()));
+    }
+
+    @Override
+    public void evictClientApp(UUID clientAppId) {
+        clientApps.removeIf(app -> clientAppId.equals(app.id()));
+    }
+}
@@ -0,0 +1,81 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.User;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Concurrent hash index from username and client app to the membership's id, filled by signups and
+ * by the first lookup of each membership. An indexed membership answers signup's existence check
+ * without a query and is loaded by primary key; memberships added in bulk by provisioning are
+ * picked up on their first lookup. Deleting an app or organization evicts its entries.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "lookup-store", name = "type", havingValue = "memory")
+public class InMemoryMembershipStore implements MembershipStore {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    private final LookupIndex<Key, Member> members = new LookupIndex<>();
+
+    @Override
+    public Optional<User> findWithIdentity(String username, UUID clientAppId) {
+        Key key = new Key(username, clientAppId);
+        Member member = members.get(key);
+        if (member != null) {
+            Optional<User> user = userRepository.findWithIdentityById(member.userId());
+            if (user.isPresent()) {
+                return user;
+            }
+            // Removed by a deletion this instance has not heard of yet
+            members.remove(key, member);
+        }
+        long epoch = members.epoch();
+        Optional<User> loaded = userRepository.findWithIdentityByUsernameAndClientApp(
+                username, clientAppRepository.getReferenceById(clientAppId));
+        loaded.ifPresent(user -> members.putAfterCommit(key, Member.of(user), epoch));
+        return loaded;
+    }
+
+    @Override
+    public boolean exists(String username, UUID clientAppId) {
+        return members.get(new Key(username, clientAppId)) != null
+                || userRepository.existsByUsernameAndClientApp(username, clientAppRepository.getReferenceById(clientAppId));
+    }
+
+    @Override
+    public void saved(User user) {
+        members.putAfterCommit(new Key(user.getUsername(), user.getClientApp().getId()), Member.of(user), members.epoch());
+    }
+
+    @Override
+    public void evictOrganization(UUID organizationId) {
+        members.removeIf(member -> organizationId.equals(member.organizationId()));
+    }
+
+    @Override
+    public void evictClientApp(UUID clientAppId) {
+        members.removeIf(member -> clientAppId.equals(member.clientAppId()));
+    }
+
+    private record Key(String username, UUID clientAppId) {
+    }
+
+    private record Member(UUID userId, UUID organizationId, UUID clientAppId) {
+
+        // Ids of lazy associations come from their proxies without loading them
+        static Member of(User user) {
+            return new Member(user.getId(), user.getOrganization().getId(), user.getClientApp().getId());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.config.RefreshTokenStoreProperties;
+import com.devang.authentication.service.ProvisioningService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Process-local store: a concurrent hash index keyed by the SHA-256 of the token. Meant for tests
+ * and single-instance edge deployments; tokens issued since the last snapshot are lost on a crash,
+ * which only forces the affected users to log in again.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "refresh-token-store", name = "type", havingValue = "memory")
+public class InMemoryRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRefreshTokenStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x52545332; // "RTS2"
+
+    @Autowired
+    private RefreshTokenStoreProperties properties;
+
+    private final TokenIndex index = new TokenIndex();
+
+    @PostConstruct
+    void restore() throws IOException {
+        Path file = snapshotPath();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a refresh token snapshot: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                TokenIndex.Key key = TokenIndex.Key.read(in);
+                TokenIndex.Entry entry = TokenIndex.Entry.read(in);
+                if (!entry.isExpired(now)) {
+                    index.put(key, entry);
+                }
+            }
+        }
+        log.info("Restored {} refresh tokens from {}", index.size(), file);
+    }
+
+    @PreDestroy
+    void close() {
+        snapshot();
+    }
+
+    @Override
+    public Optional<StoredRefreshToken> findByToken(String token) {
+        return index.find(token);
+    }
+
+    @Override
+    public Map<String, StoredRefreshToken> findByTokens(Collection<String> tokens) {
+        return index.findAll(tokens);
+    }
+
+    @Override
+    public void save(StoredRefreshToken token) {
+        TokenIndex.Key key = TokenIndex.Key.of(token.token());
+        TokenIndex.Entry entry = TokenIndex.Entry.of(token);
+        ProvisioningService.afterCommit(() -> index.put(key, entry));
+    }
+
+    /**
+     * Applied immediately rather than after commit: if the surrounding refresh rolls back the token
+     * stays revoked, which fails closed.
+     */
+    @Override
+    public boolean revoke(String token) {
+        return index.revoke(TokenIndex.Key.of(token));
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now) {
+        return index.removeMatching(entry -> entry.isExpired(now), Integer.MAX_VALUE, key -> { });
+    }
+
+    @Override
+    public int deleteByClientApp(UUID clientAppId, int limit) {
+        return index.removeMatching(entry -> clientAppId.equals(entry.clientAppId()), limit, key -> { });
+    }
+
+    @Override
+    public int deleteByOrganization(UUID organizationId, int limit) {
+        return index.removeMatching(entry -> organizationId.equals(entry.organizationId()), limit, key -> { });
+    }
+
+    /**
+     * Drops expired tokens and, when a snapshot file is configured, writes every remaining token
+     * to a temporary file that atomically replaces the previous snapshot.
+     */
+    @Scheduled(initialDelayString = "${refresh-token-store.snapshot-interval:60000}",
+            fixedDelayString = "${refresh-token-store.snapshot-interval:60000}")
+    public synchronized void snapshot() {
+        deleteExpired(LocalDateTime.now());
+        Path file = snapshotPath();
+        if (file == null) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            // Copy first so the count written up front matches the entries that follow
+            List<Map.Entry<TokenIndex.Key, TokenIndex.Entry>> copy = new ArrayList<>(index.size());
+            index.forEach((key, entry) -> copy.add(Map.entry(key, entry)));
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(copy.size());
+                for (Map.Entry<TokenIndex.Key, TokenIndex.Entry> token : copy) {
+                    token.getKey().write(out);
+                    token.getValue().write(out);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Snapshotted {} refresh tokens to {}", copy.size(), file);
+        } catch (IOException e) {
+            log.warn("Refresh token snapshot to {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    private Path snapshotPath() {
+        String file = properties.getSnapshotFile();
+        return file == null || file.isBlank() ? null : Paths.get(file);
+    }
+}
@@ -0,0 +1,44 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.Organization;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.service.ClientAppSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Default store: every lookup is one query on the unique API key column.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "lookup-store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public class JpaApiKeyStore implements ApiKeyStore {
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Override
+    public Optional<ClientAppSnapshot> findClientApp(String apiKey) {
+        return clientAppRepository.findWithOrganizationByClientAppApiKey(apiKey).map(ClientAppSnapshot::of);
+    }
+
+    @Override
+    public Optional<UUID> findOrganizationId(String apiKey) {
+        return organizationRepository.findByOrgOwnerApiKey(apiKey).map(Organization::getId);
+    }
+
+    @Override
+    public void evictOrganization(UUID organizationId) {
+    }
+
+    @Override
+    public void evictClientApp(UUID clientAppId) {
+    }
+}
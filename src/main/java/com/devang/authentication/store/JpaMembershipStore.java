@@ -0,0 +1,47 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.User;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Default store: lookups go to the users table through its unique (username, client app) index.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "lookup-store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public class JpaMembershipStore implements MembershipStore {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClientAppRepository clientAppRepository;
+
+    @Override
+    public Optional<User> findWithIdentity(String username, UUID clientAppId) {
+        return userRepository.findWithIdentityByUsernameAndClientApp(username, clientAppRepository.getReferenceById(clientAppId));
+    }
+
+    @Override
+    public boolean exists(String username, UUID clientAppId) {
+        return userRepository.existsByUsernameAndClientApp(username, clientAppRepository.getReferenceById(clientAppId));
+    }
+
+    @Override
+    public void saved(User user) {
+    }
+
+    @Override
+    public void evictOrganization(UUID organizationId) {
+    }
+
+    @Override
+    public void evictClientApp(UUID clientAppId) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.RefreshToken;
+import com.devang.authentication.repository.AuthSessionRepository;
+import com.devang.authentication.repository.OrgOwnerRepository;
+import com.devang.authentication.repository.RefreshTokenRepository;
+import com.devang.authentication.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Default store backed by the refresh_tokens table. Reads are single projection queries, so no
+ * entity graph is loaded just to check a token.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "refresh-token-store", name = "type", havingValue = "jpa", matchIfMissing = true)
+public class JpaRefreshTokenStore implements RefreshTokenStore {
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrgOwnerRepository orgOwnerRepository;
+
+    @Autowired
+    private AuthSessionRepository authSessionRepository;
+
+    @Override
+    public Optional<StoredRefreshToken> findByToken(String token) {
+        return refreshTokenRepository.findStoredByToken(token);
+    }
+
+    @Override
+    public Map<String, StoredRefreshToken> findByTokens(Collection<String> tokens) {
+        return refreshTokenRepository.findStoredByTokenIn(tokens).stream()
+                .collect(Collectors.toMap(StoredRefreshToken::token, Function.identity()));
+    }
+
+    @Override
+    public void save(StoredRefreshToken token) {
+        RefreshToken rt = new RefreshToken();
+        rt.setToken(token.token());
+        rt.setUser(token.userId() != null ? userRepository.getReferenceById(token.userId()) : null);
+        rt.setOrgOwner(token.orgOwnerId() != null ? orgOwnerRepository.getReferenceById(token.orgOwnerId()) : null);
+        rt.setSession(token.sessionId() != null ? authSessionRepository.getReferenceById(token.sessionId()) : null);
+        rt.setExpiryDate(token.expiryDate());
+        rt.setRevoked(token.revoked());
+        refreshTokenRepository.save(rt);
+    }
+
+    @Override
+    public boolean revoke(String token) {
+        return refreshTokenRepository.revokeActiveToken(token) > 0;
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now) {
+        return refreshTokenRepository.deleteExpiredTokens(now);
+    }
+
+    @Override
+    public int deleteByClientApp(UUID clientAppId, int limit) {
+        List<UUID> ids = refreshTokenRepository.findIdsByClientAppId(clientAppId, PageRequest.of(0, limit));
+        refreshTokenRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    @Override
+    public int deleteByOrganization(UUID organizationId, int limit) {
+        List<UUID> ids = new ArrayList<>(refreshTokenRepository.findIdsByUserOrganizationId(organizationId, PageRequest.of(0, limit)));
+        if (ids.size() < limit) {
+            ids.addAll(refreshTokenRepository.findIdsByOrgOwnerOrganizationId(organizationId, PageRequest.of(0, limit - ids.size())));
+        }
+        refreshTokenRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+}
@@ -0,0 +1,127 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.config.RefreshTokenStoreProperties;
+import com.devang.authentication.service.ProvisioningService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * In-memory index made durable by a memory-mapped append-only log: every issue, revoke and
+ * delete is appended after it is applied to the index, and startup replays the log. Unlike the
+ * snapshotting memory store nothing is lost on a process crash; on a machine crash at most the
+ * last refresh-token-store.log-sync-interval of changes is. Expired tokens are never logged as
+ * deleted, replay and compaction simply skip them.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "refresh-token-store", name = "type", havingValue = "log")
+public class LogRefreshTokenStore implements RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogRefreshTokenStore.class);
+
+    @Autowired
+    private RefreshTokenStoreProperties properties;
+
+    private final TokenIndex index = new TokenIndex();
+    private RefreshTokenLog journal;
+
+    @PostConstruct
+    void recover() throws IOException {
+        journal = new RefreshTokenLog(Paths.get(properties.getLogDir()), properties.getLogSegmentSize());
+        long start = System.nanoTime();
+        long records = journal.recover(index, LocalDateTime.now());
+        log.info("Replayed {} refresh token log records into {} tokens in {} ms",
+                records, index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        journal.close();
+    }
+
+    @Override
+    public Optional<StoredRefreshToken> findByToken(String token) {
+        return index.find(token);
+    }
+
+    @Override
+    public Map<String, StoredRefreshToken> findByTokens(Collection<String> tokens) {
+        return index.findAll(tokens);
+    }
+
+    @Override
+    public void save(StoredRefreshToken token) {
+        TokenIndex.Key key = TokenIndex.Key.of(token.token());
+        TokenIndex.Entry entry = TokenIndex.Entry.of(token);
+        ProvisioningService.afterCommit(() -> {
+            index.put(key, entry);
+            journal.append(RefreshTokenLog.ISSUE, key, entry);
+        });
+    }
+
+    // Applied immediately like the memory store, so a rolled back refresh fails closed
+    @Override
+    public boolean revoke(String token) {
+        TokenIndex.Key key = TokenIndex.Key.of(token);
+        if (!index.revoke(key)) {
+            return false;
+        }
+        journal.append(RefreshTokenLog.REVOKE, key, null);
+        return true;
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now) {
+        return index.removeMatching(entry -> entry.isExpired(now), Integer.MAX_VALUE, key -> { });
+    }
+
+    @Override
+    public int deleteByClientApp(UUID clientAppId, int limit) {
+        return index.removeMatching(entry -> clientAppId.equals(entry.clientAppId()), limit,
+                key -> journal.append(RefreshTokenLog.DELETE, key, null));
+    }
+
+    @Override
+    public int deleteByOrganization(UUID organizationId, int limit) {
+        return index.removeMatching(entry -> organizationId.equals(entry.organizationId()), limit,
+                key -> journal.append(RefreshTokenLog.DELETE, key, null));
+    }
+
+    @Scheduled(fixedDelayString = "${refresh-token-store.log-sync-interval:1000}")
+    public void sync() {
+        journal.force();
+    }
+
+    /**
+     * Drops expired tokens and rewrites the log as the live index, so the log stays proportional
+     * to the number of valid tokens rather than to the number of changes ever made.
+     */
+    @Scheduled(initialDelayString = "${refresh-token-store.compaction-interval:600000}",
+            fixedDelayString = "${refresh-token-store.compaction-interval:600000}")
+    public synchronized void compact() {
+        if (journal.appendedSinceCompaction() == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        deleteExpired(now);
+        try {
+            journal.compact(index, now);
+        } catch (IOException e) {
+            // Nothing is lost: the segments it would have replaced are only deleted after success
+            log.warn("Refresh token log compaction failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.service.ProvisioningService;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent index behind the in-memory lookup stores. Entries only hold what was read from, or
+ * written to, the database, and are added once that transaction commits. Every eviction bumps an
+ * epoch; an entry loaded before it is not added, so a lookup racing a key's deletion cannot put the
+ * deleted key back.
+ */
+final class LookupIndex<K, V> {
+
+    private final ConcurrentMap<K, V> entries = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    V get(K key) {
+        return entries.get(key);
+    }
+
+    // Taken before reading the database and handed to putAfterCommit
+    long epoch() {
+        return epoch.get();
+    }
+
+    void putAfterCommit(K key, V value, long loadedAt) {
+        ProvisioningService.afterCommit(() -> {
+            if (epoch.get() != loadedAt) {
+                return;
+            }
+            entries.put(key, value);
+            // An eviction that ran between the check and the put may have missed this entry
+            if (epoch.get() != loadedAt) {
+                entries.remove(key, value);
+            }
+        });
+    }
+
+    void remove(K key, V value) {
+        entries.remove(key, value);
+    }
+
+    void removeIf(Predicate<? super V> filter) {
+        epoch.incrementAndGet();
+        entries.values().removeIf(filter);
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.User;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Lookup SPI for client app memberships by username, read by every login, signup and SSO exchange.
+ * Selected with lookup-store.type like {@link ApiKeyStore}: {@code jpa} (default) queries the users
+ * table, {@code memory} keeps a concurrent index from username and client app to the membership's
+ * id. Either way the membership returned is loaded from the database, since callers write through
+ * it.
+ */
+public interface MembershipStore {
+
+    // The membership with its identity loaded, so the caller can check the password
+    Optional<User> findWithIdentity(String username, UUID clientAppId);
+
+    boolean exists(String username, UUID clientAppId);
+
+    // Membership created in the current transaction; indexed once it commits
+    void saved(User user);
+
+    void evictOrganization(UUID organizationId);
+
+    void evictClientApp(UUID clientAppId);
+}
@@ -0,0 +1,257 @@
+package com.devang.authentication.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of refresh token changes in fixed-size memory-mapped segments
+ * ({@code tokens-<seq>.log}). Each record is {@code [length][payload][crc32]}; a zero length marks
+ * the end of a segment, and a torn or corrupt record ends replay of its segment. Appends land in
+ * the page cache and survive a process crash immediately; {@link #force()} makes them survive a
+ * machine crash too.
+ *
+ * <p>Compaction rolls appends over to a new segment, writes the live index as the segment right
+ * before it and only then deletes everything older. A crash at any point leaves a set of segments
+ * whose replay in sequence order still yields the current state.
+ */
+final class RefreshTokenLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenLog.class);
+
+    static final byte ISSUE = 1;
+    static final byte REVOKE = 2;
+    static final byte DELETE = 3;
+
+    private static final Pattern SEGMENT = Pattern.compile("tokens-(\\d{16})\\.log");
+    // Length prefix and CRC around each payload
+    private static final int RECORD_OVERHEAD = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    private long activeSequence;
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private long appendedSinceCompaction;
+
+    RefreshTokenLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Replays every segment in sequence order into the index and opens a fresh segment for
+     * appends. Returns the number of records replayed.
+     */
+    synchronized long recover(TokenIndex index, LocalDateTime now) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = SEGMENT.matcher(name);
+                if (matcher.matches()) {
+                    segments.put(Long.parseLong(matcher.group(1)), file);
+                } else if (name.endsWith(".tmp")) {
+                    // Unfinished compaction output; the segments it was built from are still there
+                    Files.delete(file);
+                }
+            }
+        }
+
+        long records = 0;
+        for (Path segment : segments.values()) {
+            records += replay(segment, index, now);
+        }
+        openSegment(segments.isEmpty() ? 1 : segments.lastKey() + 1);
+        return records;
+    }
+
+    synchronized void append(byte type, TokenIndex.Key key, TokenIndex.Entry entry) {
+        byte[] payload = encode(type, key, entry);
+        // Keep room for the zero length that terminates the segment
+        if (active.remaining() < payload.length + RECORD_OVERHEAD + 4) {
+            openSegment(activeSequence + 1);
+        }
+        crc.reset();
+        crc.update(payload);
+        active.putInt(payload.length);
+        active.put(payload);
+        active.putInt((int) crc.getValue());
+        appendedSinceCompaction++;
+    }
+
+    synchronized void force() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    synchronized long appendedSinceCompaction() {
+        return appendedSinceCompaction;
+    }
+
+    /**
+     * Rewrites the log as one segment holding the live, unexpired entries of the index.
+     */
+    void compact(TokenIndex index, LocalDateTime now) throws IOException {
+        long compactedSequence;
+        synchronized (this) {
+            compactedSequence = activeSequence + 1;
+            openSegment(activeSequence + 2);
+            appendedSinceCompaction = 0;
+        }
+
+        Path target = segmentPath(compactedSequence);
+        Path tmp = directory.resolve(target.getFileName() + ".tmp");
+        List<byte[]> records = new ArrayList<>(index.size());
+        index.forEach((key, entry) -> {
+            if (!entry.isExpired(now)) {
+                records.add(encode(ISSUE, key, entry));
+            }
+        });
+        try (OutputStream file = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            CRC32 checksum = new CRC32();
+            for (byte[] payload : records) {
+                checksum.reset();
+                checksum.update(payload);
+                out.writeInt(payload.length);
+                out.write(payload);
+                out.writeInt((int) checksum.getValue());
+            }
+            out.writeInt(0);
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT.matcher(file.getFileName().toString());
+                if (matcher.matches() && Long.parseLong(matcher.group(1)) < compactedSequence) {
+                    Files.delete(file);
+                }
+            }
+        }
+        log.info("Compacted refresh token log to {} records", records.size());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            active.force();
+            activeChannel.close();
+            activeChannel = null;
+            active = null;
+        }
+    }
+
+    private long replay(Path segment, TokenIndex index, LocalDateTime now) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 checksum = new CRC32();
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > buffer.remaining() - 4) {
+                    log.warn("Truncated record in {} after {} records; ignoring the rest of the segment", segment, records);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                checksum.reset();
+                checksum.update(payload);
+                if (buffer.getInt() != (int) checksum.getValue()) {
+                    log.warn("Corrupt record in {} after {} records; ignoring the rest of the segment", segment, records);
+                    break;
+                }
+                apply(payload, index, now);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static void apply(byte[] payload, TokenIndex index, LocalDateTime now) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        TokenIndex.Key key = TokenIndex.Key.read(in);
+        switch (type) {
+            case ISSUE -> {
+                TokenIndex.Entry entry = TokenIndex.Entry.read(in);
+                if (entry.isExpired(now)) {
+                    index.remove(key);
+                } else {
+                    index.put(key, entry);
+                }
+            }
+            case REVOKE -> index.revoke(key);
+            case DELETE -> index.remove(key);
+            default -> throw new IOException("Unknown refresh token log record type " + type);
+        }
+    }
+
+    private static byte[] encode(byte type, TokenIndex.Key key, TokenIndex.Entry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            key.write(out);
+            if (entry != null) {
+                entry.write(out);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openSegment(long sequence) {
+        try {
+            if (activeChannel != null) {
+                active.force();
+                activeChannel.close();
+            }
+            activeChannel = FileChannel.open(segmentPath(sequence),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            activeSequence = sequence;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open refresh token log segment " + sequence, e);
+        }
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("tokens-%016d.log", sequence));
+    }
+}
@@ -0,0 +1,45 @@
+package com.devang.authentication.store;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage SPI for refresh tokens, the most frequently written and read records of the service.
+ * Selected with refresh-token-store.type: {@code jpa} (default) keeps them in the refresh_tokens
+ * table, {@code memory} keeps them in process with optional snapshots to disk.
+ *
+ * <p>API key and membership lookups have their own SPIs, {@link ApiKeyStore} and
+ * {@link MembershipStore}. Organizations, client apps, users and sessions themselves stay JPA
+ * entities in PostgreSQL, so no engine lets the service run without it.
+ */
+public interface RefreshTokenStore {
+
+    Optional<StoredRefreshToken> findByToken(String token);
+
+    /**
+     * Looks up several tokens at once; tokens that are not stored are absent from the result.
+     */
+    Map<String, StoredRefreshToken> findByTokens(Collection<String> tokens);
+
+    /**
+     * Stores a newly issued token. Inside a transaction the token only becomes visible once it
+     * commits, so a rolled back issue never leaves a usable token behind.
+     */
+    void save(StoredRefreshToken token);
+
+    /**
+     * Marks the token revoked. Returns false if it was unknown or already revoked, which lets a
+     * token be rotated at most once even under concurrent refreshes.
+     */
+    boolean revoke(String token);
+
+    int deleteExpired(LocalDateTime now);
+
+    // Chunked removal for tenant deletion; each call removes at most limit tokens
+    int deleteByClientApp(UUID clientAppId, int limit);
+
+    int deleteByOrganization(UUID organizationId, int limit);
+}
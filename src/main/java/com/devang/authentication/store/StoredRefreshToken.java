@@ -0,0 +1,24 @@
+package com.devang.authentication.store;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A refresh token as held by a {@link RefreshTokenStore}. Exactly one of userId and orgOwnerId is
+ * set; sessionId is null only for tokens issued before sessions existed.
+ */
+public record StoredRefreshToken(
+        String token,
+        UUID userId,
+        UUID orgOwnerId,
+        UUID sessionId,
+        UUID organizationId,
+        // Null for org owner tokens
+        UUID clientAppId,
+        LocalDateTime expiryDate,
+        boolean revoked) {
+
+    public boolean isExpired() {
+        return LocalDateTime.now().isAfter(expiryDate);
+    }
+}
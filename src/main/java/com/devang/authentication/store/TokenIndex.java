@@ -0,0 +1,167 @@
+package com.devang.authentication.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent in-memory index shared by the process-local stores. Tokens are keyed by their
+ * SHA-256 digest, so neither the heap nor anything persisted from it holds a usable token.
+ */
+final class TokenIndex {
+
+    private final ConcurrentHashMap<Key, Entry> tokens = new ConcurrentHashMap<>();
+
+    Optional<StoredRefreshToken> find(String token) {
+        Entry entry = tokens.get(Key.of(token));
+        return entry != null ? Optional.of(entry.toStored(token)) : Optional.empty();
+    }
+
+    Map<String, StoredRefreshToken> findAll(Collection<String> tokens) {
+        Map<String, StoredRefreshToken> found = new HashMap<>();
+        for (String token : tokens) {
+            find(token).ifPresent(stored -> found.put(token, stored));
+        }
+        return found;
+    }
+
+    void put(Key key, Entry entry) {
+        tokens.put(key, entry);
+    }
+
+    /**
+     * Returns true only for the call that flipped the token from active to revoked.
+     */
+    boolean revoke(Key key) {
+        boolean[] revoked = new boolean[1];
+        tokens.computeIfPresent(key, (k, entry) -> {
+            if (entry.revoked()) {
+                return entry;
+            }
+            revoked[0] = true;
+            return entry.withRevoked();
+        });
+        return revoked[0];
+    }
+
+    void remove(Key key) {
+        tokens.remove(key);
+    }
+
+    /**
+     * Removes up to limit matching entries, handing each removed key to the listener.
+     */
+    int removeMatching(Predicate<Entry> predicate, int limit, Consumer<Key> removed) {
+        int count = 0;
+        Iterator<Map.Entry<Key, Entry>> entries = tokens.entrySet().iterator();
+        while (count < limit && entries.hasNext()) {
+            Map.Entry<Key, Entry> entry = entries.next();
+            if (predicate.test(entry.getValue())) {
+                entries.remove();
+                removed.accept(entry.getKey());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void forEach(BiConsumer<Key, Entry> action) {
+        tokens.forEach(action);
+    }
+
+    int size() {
+        return tokens.size();
+    }
+
+    /**
+     * SHA-256 digest of a token, held as four longs.
+     */
+    record Key(long a, long b, long c, long d) {
+
+        static Key of(String token) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new Key(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeLong(a);
+            out.writeLong(b);
+            out.writeLong(c);
+            out.writeLong(d);
+        }
+
+        static Key read(DataInput in) throws IOException {
+            return new Key(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    record Entry(UUID userId, UUID orgOwnerId, UUID sessionId, UUID organizationId, UUID clientAppId,
+                 LocalDateTime expiryDate, boolean revoked) {
+
+        static Entry of(StoredRefreshToken token) {
+            return new Entry(token.userId(), token.orgOwnerId(), token.sessionId(), token.organizationId(),
+                    token.clientAppId(), token.expiryDate(), token.revoked());
+        }
+
+        StoredRefreshToken toStored(String token) {
+            return new StoredRefreshToken(token, userId, orgOwnerId, sessionId, organizationId, clientAppId,
+                    expiryDate, revoked);
+        }
+
+        Entry withRevoked() {
+            return new Entry(userId, orgOwnerId, sessionId, organizationId, clientAppId, expiryDate, true);
+        }
+
+        boolean isExpired(LocalDateTime now) {
+            return now.isAfter(expiryDate);
+        }
+
+        void write(DataOutput out) throws IOException {
+            writeUuid(out, userId);
+            writeUuid(out, orgOwnerId);
+            writeUuid(out, sessionId);
+            writeUuid(out, organizationId);
+            writeUuid(out, clientAppId);
+            out.writeLong(expiryDate.toEpochSecond(ZoneOffset.UTC));
+            out.writeBoolean(revoked);
+        }
+
+        static Entry read(DataInput in) throws IOException {
+            return new Entry(readUuid(in), readUuid(in), readUuid(in), readUuid(in), readUuid(in),
+                    LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC), in.readBoolean());
+        }
+
+        private static void writeUuid(DataOutput out, UUID id) throws IOException {
+            out.writeBoolean(id != null);
+            if (id != null) {
+                out.writeLong(id.getMostSignificantBits());
+                out.writeLong(id.getLeastSignificantBits());
+            }
+        }
+
+        private static UUID readUuid(DataInput in) throws IOException {
+            return in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+        }
+    }
+}
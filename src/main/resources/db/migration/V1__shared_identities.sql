@@ -0,0 +1,108 @@
+-- Moves credentials and profile from per-client-app user rows to per-organization identities.
+--
+-- Nothing happens on a fresh database (Hibernate creates the schema) or once users no longer has
+-- the legacy password column. Rows of one username are only merged into a shared identity when
+-- their password hash and profile are identical, as copies made by SSO provisioning are. Every
+-- other variant keeps its own identity under a "<username>#<user id>" key, so its owner still signs
+-- in with their own password and profile, and is listed in identity_migration_conflicts for review.
+--
+-- The legacy columns on users are kept; a later migration drops them explicitly.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'users' AND column_name = 'password') THEN
+        RETURN;
+    END IF;
+
+    CREATE TABLE IF NOT EXISTS identities (
+        id uuid PRIMARY KEY,
+        organization_id uuid NOT NULL REFERENCES organizations (id),
+        username varchar(255) NOT NULL,
+        password varchar(255) NOT NULL,
+        email varchar(255),
+        first_name varchar(255),
+        last_name varchar(255),
+        user_metadata text,
+        token_generation bigint DEFAULT 0 NOT NULL,
+        created_at timestamp(6) NOT NULL,
+        updated_at timestamp(6),
+        CONSTRAINT uk_identity_org_username UNIQUE (organization_id, username)
+    );
+
+    CREATE TABLE IF NOT EXISTS identity_migration_conflicts (
+        organization_id uuid NOT NULL,
+        username varchar(255) NOT NULL,
+        user_id uuid NOT NULL,
+        identity_id uuid NOT NULL,
+        recorded_at timestamp(6) NOT NULL
+    );
+
+    ALTER TABLE users ADD COLUMN IF NOT EXISTS identity_id uuid REFERENCES identities (id);
+    ALTER TABLE users ADD COLUMN IF NOT EXISTS token_generation bigint DEFAULT 0;
+    -- Memberships created from now on carry no credentials of their own
+    ALTER TABLE users ALTER COLUMN password DROP NOT NULL;
+    ALTER TABLE users ALTER COLUMN token_generation DROP NOT NULL;
+
+    -- Usernames whose unlinked rows all carry the same credentials and profile
+    INSERT INTO identities (id, organization_id, username, password, email, first_name, last_name,
+                            user_metadata, token_generation, created_at, updated_at)
+    SELECT gen_random_uuid(), organization_id, username, password, email, first_name, last_name,
+           user_metadata, MAX(COALESCE(token_generation, 0)), MIN(created_at), MAX(updated_at)
+    FROM users
+    WHERE identity_id IS NULL AND password IS NOT NULL
+      AND (organization_id, username) IN (
+          SELECT organization_id, username
+          FROM (SELECT DISTINCT organization_id, username, password, email, first_name, last_name, user_metadata
+                FROM users WHERE identity_id IS NULL AND password IS NOT NULL) variants
+          GROUP BY organization_id, username
+          HAVING COUNT(*) = 1)
+    GROUP BY organization_id, username, password, email, first_name, last_name, user_metadata
+    ON CONFLICT (organization_id, username) DO NOTHING;
+
+    -- Links rows to a same-named identity only when nothing would be lost by sharing it
+    UPDATE users u SET identity_id = i.id
+    FROM identities i
+    WHERE u.identity_id IS NULL
+      AND i.organization_id = u.organization_id AND i.username = u.username
+      AND i.password = u.password
+      AND i.email IS NOT DISTINCT FROM u.email
+      AND i.first_name IS NOT DISTINCT FROM u.first_name
+      AND i.last_name IS NOT DISTINCT FROM u.last_name
+      AND i.user_metadata IS NOT DISTINCT FROM u.user_metadata;
+
+    -- Everything left differs from another row of its username: one identity per variant
+    CREATE TEMPORARY TABLE identity_variants ON COMMIT DROP AS
+    SELECT gen_random_uuid() AS identity_id, v.*
+    FROM (SELECT organization_id, username, password, email, first_name, last_name, user_metadata,
+                 MIN(id::text) AS first_user_id, MAX(COALESCE(token_generation, 0)) AS token_generation,
+                 MIN(created_at) AS created_at, MAX(updated_at) AS updated_at
+          FROM users
+          WHERE identity_id IS NULL AND password IS NOT NULL
+          GROUP BY organization_id, username, password, email, first_name, last_name, user_metadata) v;
+
+    INSERT INTO identities (id, organization_id, username, password, email, first_name, last_name,
+                            user_metadata, token_generation, created_at, updated_at)
+    SELECT identity_id, organization_id, username || '#' || first_user_id, password, email, first_name,
+           last_name, user_metadata, token_generation, created_at, updated_at
+    FROM identity_variants;
+
+    UPDATE users u SET identity_id = v.identity_id
+    FROM identity_variants v
+    WHERE u.identity_id IS NULL
+      AND v.organization_id = u.organization_id AND v.username = u.username
+      AND v.password = u.password
+      AND v.email IS NOT DISTINCT FROM u.email
+      AND v.first_name IS NOT DISTINCT FROM u.first_name
+      AND v.last_name IS NOT DISTINCT FROM u.last_name
+      AND v.user_metadata IS NOT DISTINCT FROM u.user_metadata;
+
+    INSERT INTO identity_migration_conflicts (organization_id, username, user_id, identity_id, recorded_at)
+    SELECT u.organization_id, u.username, u.id, u.identity_id, now()
+    FROM users u JOIN identity_variants v ON v.identity_id = u.identity_id;
+
+    IF EXISTS (SELECT 1 FROM identity_variants) THEN
+        RAISE WARNING 'Kept % conflicting username variants as separate identities; see identity_migration_conflicts',
+            (SELECT COUNT(*) FROM identity_variants);
+    END IF;
+END
+$$;
@@ -0,0 +1,19 @@
+-- Idempotency records used to hold the whole response, including issued tokens and client app API
+-- keys, and the caller's raw API key in the scope. Those rows are dropped along with the response
+-- columns; Hibernate adds the resource columns that replace them. A retry of a request made before
+-- the upgrade is then treated as new, which at worst fails on the unique constraint it hits.
+--
+-- Nothing happens on a fresh database or once the response column is gone.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'idempotency_records'
+                     AND column_name = 'response_body') THEN
+        RETURN;
+    END IF;
+
+    DELETE FROM idempotency_records;
+    ALTER TABLE idempotency_records DROP COLUMN response_body;
+    ALTER TABLE idempotency_records DROP COLUMN IF EXISTS status;
+END
+$$;
@@ -0,0 +1,47 @@
+-- V1 keyed each conflicting legacy username variant as an identity named "<username>#<user id>".
+-- Backfilling a client app copies identity usernames into memberships, so that name leaked into
+-- users: members nobody can sign in as, which also collide with a later signup of the username.
+-- The variant key moves to its own discriminator column (empty for every other identity), the
+-- identities get their original usernames back, and memberships created under a variant key are
+-- removed with their sessions and refresh tokens. The legacy memberships of the variants kept their
+-- own usernames and are untouched.
+--
+-- Nothing happens on a fresh database (Hibernate creates the schema), and a second run changes
+-- nothing.
+DO $$
+BEGIN
+    IF to_regclass('identities') IS NULL THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE identities ADD COLUMN IF NOT EXISTS discriminator varchar(255) DEFAULT '' NOT NULL;
+    ALTER TABLE identities DROP CONSTRAINT IF EXISTS uk_identity_org_username;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_identity_org_username_discriminator') THEN
+        ALTER TABLE identities ADD CONSTRAINT uk_identity_org_username_discriminator
+            UNIQUE (organization_id, username, discriminator);
+    END IF;
+
+    IF to_regclass('identity_migration_conflicts') IS NULL THEN
+        RETURN;
+    END IF;
+
+    CREATE TEMPORARY TABLE variant_memberships ON COMMIT DROP AS
+    SELECT u.id
+    FROM users u JOIN identities i ON i.id = u.identity_id
+    JOIN (SELECT DISTINCT identity_id, username FROM identity_migration_conflicts) c ON c.identity_id = i.id
+    WHERE i.discriminator = '' AND u.username = i.username AND i.username <> c.username;
+
+    IF to_regclass('refresh_tokens') IS NOT NULL THEN
+        DELETE FROM refresh_tokens WHERE user_id IN (SELECT id FROM variant_memberships);
+    END IF;
+    IF to_regclass('auth_sessions') IS NOT NULL THEN
+        DELETE FROM auth_sessions WHERE user_id IN (SELECT id FROM variant_memberships);
+    END IF;
+    DELETE FROM users WHERE id IN (SELECT id FROM variant_memberships);
+
+    UPDATE identities i
+    SET username = c.username, discriminator = substring(i.username FROM length(c.username) + 2)
+    FROM (SELECT DISTINCT identity_id, username FROM identity_migration_conflicts) c
+    WHERE i.id = c.identity_id AND i.discriminator = '' AND i.username <> c.username;
+END
+$$;
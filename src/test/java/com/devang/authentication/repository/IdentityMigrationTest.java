@@ -0,0 +1,125 @@
+package com.devang.authentication.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Runs the Flyway migrations on a legacy schema holding two conflicting rows of one username, then
+ * backfills a new client app with the same queries {@link UserRepository} uses.
+ */
+class IdentityMigrationTest {
+
+    private static final UUID ORG = UUID.randomUUID();
+    private static final UUID LEGACY_APP = UUID.randomUUID();
+    private static final UUID OTHER_LEGACY_APP = UUID.randomUUID();
+    private static final UUID APP_BACKFILLED_BEFORE_FIX = UUID.randomUUID();
+    private static final UUID NEW_APP = UUID.randomUUID();
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void migrateLegacySchema() throws Exception {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        jdbc = new JdbcTemplate(dataSource);
+
+        jdbc.execute("CREATE TABLE organizations (id uuid PRIMARY KEY, name varchar(255))");
+        jdbc.execute("CREATE TABLE client_apps (id uuid PRIMARY KEY, organization_id uuid REFERENCES organizations (id), " +
+                "deleted_at timestamp(6))");
+        jdbc.execute("CREATE TABLE users (id uuid PRIMARY KEY, username varchar(255) NOT NULL, " +
+                "password varchar(255) NOT NULL, email varchar(255), first_name varchar(255), last_name varchar(255), " +
+                "user_metadata text, organization_id uuid REFERENCES organizations (id), " +
+                "client_app_id uuid REFERENCES client_apps (id), created_at timestamp(6) NOT NULL, updated_at timestamp(6), " +
+                "CONSTRAINT uk_username_client_app UNIQUE (username, client_app_id))");
+        jdbc.execute("CREATE TABLE refresh_tokens (id uuid PRIMARY KEY, user_id uuid REFERENCES users (id))");
+        jdbc.update("INSERT INTO organizations (id, name) VALUES (?, 'acme')", ORG);
+        for (UUID app : List.of(LEGACY_APP, OTHER_LEGACY_APP, APP_BACKFILLED_BEFORE_FIX, NEW_APP)) {
+            jdbc.update("INSERT INTO client_apps (id, organization_id) VALUES (?, ?)", app, ORG);
+        }
+        // Two different people signed up as alice in different apps; bob is a plain SSO copy
+        insertLegacyUser("alice", "hash-1", LEGACY_APP);
+        insertLegacyUser("alice", "hash-2", OTHER_LEGACY_APP);
+        insertLegacyUser("bob", "hash-3", LEGACY_APP);
+        insertLegacyUser("bob", "hash-3", OTHER_LEGACY_APP);
+
+        flyway(dataSource, "1").migrate();
+        // What a backfill did while variants were still named "alice#<user id>"
+        jdbc.update("INSERT INTO users (id, username, identity_id, organization_id, client_app_id, created_at) " +
+                "SELECT gen_random_uuid(), i.username, i.id, i.organization_id, ?, now() FROM identities i", APP_BACKFILLED_BEFORE_FIX);
+        jdbc.update("INSERT INTO refresh_tokens (id, user_id) SELECT gen_random_uuid(), id FROM users " +
+                "WHERE client_app_id = ?", APP_BACKFILLED_BEFORE_FIX);
+
+        flyway(dataSource, null).migrate();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        postgres.close();
+    }
+
+    @Test
+    void variantsKeepTheirUsernameAndDifferByDiscriminator() {
+        List<Map<String, Object>> alices = jdbc.queryForList(
+                "SELECT username, discriminator FROM identities WHERE id IN (SELECT identity_id FROM identity_migration_conflicts)");
+
+        assertThat(alices).hasSize(2).allSatisfy(row -> {
+            assertThat(row.get("username")).isEqualTo("alice");
+            assertThat((String) row.get("discriminator")).isNotEmpty();
+        });
+        assertThat(jdbc.queryForObject("SELECT discriminator FROM identities WHERE username = 'bob'", String.class)).isEmpty();
+    }
+
+    @Test
+    void membershipsCreatedUnderAVariantKeyAreRemoved() {
+        assertThat(jdbc.queryForList("SELECT username FROM users WHERE client_app_id = ?", String.class,
+                APP_BACKFILLED_BEFORE_FIX)).containsExactly("bob");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM refresh_tokens", Integer.class)).isEqualTo(1);
+        // Each variant still signs in to the app it came from under its own name
+        assertThat(jdbc.queryForList("SELECT username FROM users WHERE client_app_id IN (?, ?) AND username = 'alice'",
+                String.class, LEGACY_APP, OTHER_LEGACY_APP)).hasSize(2);
+    }
+
+    @Test
+    void backfillSkipsVariantsAndLeavesTheUsernameFreeForSignup() throws Exception {
+        NamedParameterJdbcTemplate named = new NamedParameterJdbcTemplate(jdbc);
+        List<String> usernames = named.queryForList(query("findUsernamesInOrganizationAfter", UUID.class, String.class, int.class),
+                Map.of("organizationId", ORG, "after", "", "limit", 100), String.class);
+        named.update(query("provisionUsernamesIntoClientApp", List.class, UUID.class, UUID.class),
+                Map.of("usernames", usernames, "organizationId", ORG, "clientAppId", NEW_APP));
+
+        assertThat(jdbc.queryForList("SELECT username FROM users WHERE client_app_id = ?", String.class, NEW_APP))
+                .containsExactly("bob");
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE username LIKE '%#%'", Integer.class)).isZero();
+        assertThatCode(() -> jdbc.update("INSERT INTO identities (id, organization_id, username, password, created_at) " +
+                "VALUES (gen_random_uuid(), ?, 'alice', 'hash-4', now())", ORG)).doesNotThrowAnyException();
+    }
+
+    private static void insertLegacyUser(String username, String password, UUID app) {
+        jdbc.update("INSERT INTO users (id, username, password, organization_id, client_app_id, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, now())", UUID.randomUUID(), username, password, ORG, app);
+    }
+
+    private static Flyway flyway(DataSource dataSource, String target) {
+        var config = Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("0");
+        return (target != null ? config.target(target) : config).load();
+    }
+
+    private static String query(String method, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return UserRepository.class.getMethod(method, parameterTypes).getAnnotation(Query.class).value();
+    }
+}
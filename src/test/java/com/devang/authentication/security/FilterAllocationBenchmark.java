@@ -0,0 +1,179 @@
+package com.devang.authentication.security;
+
+import com.devang.authentication.config.ApiKeyCacheProperties;
+import com.devang.authentication.service.ClientAppSnapshot;
+import com.devang.authentication.store.ApiKeyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bytes allocated per call on the API key path, measured with the thread allocation counter after
+ * a warmup long enough for the JIT to apply escape analysis. Rows:
+ * <ul>
+ *   <li>the whole filter for a cached client app key, with a reused mock request, so the figure
+ *       also holds the filter's own bookkeeping (timer, request attribute, security context);</li>
+ *   <li>the token as built today from the interned {@link ApiKeyPrincipal}, with its authorities
+ *       and details read once as the authorization filter and event logging do;</li>
+ *   <li>the token as it was built before principals were interned: id strings, a new authority
+ *       list and details from the request on every call.</li>
+ * </ul>
+ * Not a test; run it from the project root with
+ * <pre>
+ * mvn test-compile org.codehaus.mojo:exec-maven-plugin:3.5.1:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.devang.authentication.security.FilterAllocationBenchmark -Dexec.args="iterations=2000000"
+ * </pre>
+ */
+public final class FilterAllocationBenchmark {
+
+    private static final String API_KEY = "app_benchmark";
+    private static final UUID ORGANIZATION_ID = UUID.randomUUID();
+    private static final UUID CLIENT_APP_ID = UUID.randomUUID();
+
+    private static long sink;
+
+    private FilterAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = 1_000_000;
+        for (String arg : args) {
+            if (!arg.startsWith("iterations=")) {
+                throw new IllegalArgumentException("Expected iterations=<count> but got: " + arg);
+            }
+            iterations = Integer.parseInt(arg.substring("iterations=".length()));
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ApiKeyAuthenticationFilter filter = filter();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/organization/me");
+        request.addHeader("apikey", API_KEY);
+        request.setRemoteAddr("192.0.2.10");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> sink += SecurityContextHolder.getContext().getAuthentication().hashCode();
+        ApiKeyPrincipal principal = ApiKeyPrincipal.clientApp(API_KEY, ORGANIZATION_ID, CLIENT_APP_ID);
+
+        Call filterCall = () -> {
+            filter.doFilter(request, response, chain);
+            SecurityContextHolder.clearContext();
+        };
+        Call internedToken = () -> consume(new ApiKeyAuthenticationToken(principal, request.getRemoteAddr()));
+        Call perRequestToken = () -> {
+            LegacyToken token = new LegacyToken(API_KEY, "CLIENT_APP", ORGANIZATION_ID.toString(), CLIENT_APP_ID.toString(),
+                    Collections.singletonList(new SimpleGrantedAuthority("ROLE_CLIENT_APP")));
+            token.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            consume(token);
+        };
+
+        System.out.printf(Locale.ROOT, "%nBytes allocated per call, %d iterations after as many warmup calls%n", iterations);
+        System.out.printf(Locale.ROOT, "%-34s %10s%n", "path", "bytes/call");
+        print("filter, cached client app key", measure(threads, filterCall, iterations));
+        print("token from interned principal", measure(threads, internedToken, iterations));
+        print("token built per request (before)", measure(threads, perRequestToken, iterations));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static ApiKeyAuthenticationFilter filter() {
+        ApiKeyPrincipalCache cache = new ApiKeyPrincipalCache();
+        ReflectionTestUtils.setField(cache, "properties", new ApiKeyCacheProperties());
+        ClientAppSnapshot app = new ClientAppSnapshot(CLIENT_APP_ID, API_KEY, false, ORGANIZATION_ID, "benchmark", false);
+        ApiKeyStore store = new ApiKeyStore() {
+            @Override
+            public Optional<ClientAppSnapshot> findClientApp(String apiKey) {
+                return API_KEY.equals(apiKey) ? Optional.of(app) : Optional.empty();
+            }
+
+            @Override
+            public Optional<UUID> findOrganizationId(String apiKey) {
+                return Optional.empty();
+            }
+
+            @Override
+            public void evictOrganization(UUID organizationId) {
+            }
+
+            @Override
+            public void evictClientApp(UUID clientAppId) {
+            }
+        };
+        return new ApiKeyAuthenticationFilter(store, cache, new SimpleMeterRegistry());
+    }
+
+    // Reads what the rest of the chain reads from every authentication
+    private static void consume(Authentication authentication) {
+        sink += authentication.getAuthorities().size() + authentication.getDetails().hashCode()
+                + authentication.getPrincipal().hashCode();
+    }
+
+    private static double measure(com.sun.management.ThreadMXBean threads, Call call, int iterations) throws Exception {
+        for (int i = 0; i < iterations; i++) {
+            call.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            call.run();
+        }
+        return (double) (threads.getCurrentThreadAllocatedBytes() - before) / iterations;
+    }
+
+    private static void print(String label, double bytes) {
+        System.out.printf(Locale.ROOT, "%-34s %10.1f%n", label, bytes);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    // ApiKeyAuthenticationToken as it was before ApiKeyPrincipal existed
+    private static final class LegacyToken extends AbstractAuthenticationToken {
+
+        private final String apiKey;
+        private final String userType;
+        private final String organizationId;
+        private final String clientAppId;
+
+        LegacyToken(String apiKey, String userType, String organizationId, String clientAppId,
+                    Collection<? extends GrantedAuthority> authorities) {
+            super(authorities);
+            this.apiKey = apiKey;
+            this.userType = userType;
+            this.organizationId = organizationId;
+            this.clientAppId = clientAppId;
+            setAuthenticated(true);
+        }
+
+        @Override
+        public Object getCredentials() {
+            return apiKey;
+        }
+
+        @Override
+        public Object getPrincipal() {
+            return apiKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return apiKey.hashCode() ^ userType.hashCode() ^ organizationId.hashCode() ^ clientAppId.hashCode();
+        }
+    }
+}
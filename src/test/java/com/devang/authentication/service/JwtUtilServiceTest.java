@@ -0,0 +1,60 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.JwtProperties;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilServiceTest {
+
+    private static final String FIRST = "first-secret-at-least-32-bytes-long!!";
+    private static final String SECOND = "second-secret-at-least-32-bytes-long!";
+    private static final String THIRD = "third-secret-at-least-32-bytes-long!!";
+
+    private JwtProperties properties;
+    private JwtUtilService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new JwtProperties();
+        properties.setSecret(FIRST);
+        properties.setAccessTokenExpiration(60000);
+        properties.setRefreshTokenExpiration(60000);
+        service = new JwtUtilService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "jwtProperties", properties);
+        service.init();
+    }
+
+    @Test
+    void tokensOfEveryKeyRotatedOutWithinTheGracePeriodStillVerify() {
+        String first = service.generateAccessToken(Map.of("sub", "alice"));
+        rotateTo(SECOND);
+        String second = service.generateAccessToken(Map.of("sub", "alice"));
+        rotateTo(THIRD);
+
+        assertThat(service.getActiveKeyVersion()).isEqualTo(3);
+        assertThatCode(() -> service.validateTokenAndGetClaims(first)).doesNotThrowAnyException();
+        assertThatCode(() -> service.validateTokenAndGetClaims(second)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void tokensOfAKeyPastItsGracePeriodAreRejected() {
+        properties.setKeyGracePeriod(0);
+        String first = service.generateAccessToken(Map.of("sub", "alice"));
+        rotateTo(SECOND);
+
+        assertThatThrownBy(() -> service.validateTokenAndGetClaims(first)).isInstanceOf(JwtException.class);
+    }
+
+    private void rotateTo(String secret) {
+        service.updateSigningConfig(secret, properties.getAccessTokenExpiration(), properties.getRefreshTokenExpiration());
+    }
+}
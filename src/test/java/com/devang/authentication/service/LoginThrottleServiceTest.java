@@ -0,0 +1,67 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.LoginThrottleProperties;
+import com.devang.authentication.exception.AuthException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleServiceTest {
+
+    private LoginThrottleProperties properties;
+    private LoginThrottleService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LoginThrottleProperties();
+        // A tiny sketch, so a modest spray saturates every cell
+        properties.setSketchWidth(16);
+        properties.setSketchDepth(2);
+        service = new LoginThrottleService(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sprayAcrossUsernamesDoesNotLockOutOthers() {
+        for (int i = 0; i < 10000; i++) {
+            service.recordFailure(LoginThrottleService.usernameKey("app", "sprayed-" + i), "10.0.0." + (i % 200));
+        }
+
+        assertThatCode(() -> service.checkAllowed(LoginThrottleService.usernameKey("app", "alice"), "192.0.2.1"))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void repeatedFailuresLockTheUsernameOut() {
+        String key = LoginThrottleService.usernameKey("app", "alice");
+        for (int i = 0; i < properties.getUsernameLockoutThreshold(); i++) {
+            service.recordFailure(key, "192.0.2." + i);
+        }
+
+        assertThatThrownBy(() -> service.checkAllowed(key, "198.51.100.1"))
+                .isInstanceOfSatisfying(AuthException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(60);
+                });
+        assertThatCode(() -> service.checkAllowed(LoginThrottleService.usernameKey("app", "bob"), "198.51.100.1"))
+                .doesNotThrowAnyException();
+    }
+
+    @Test
+    void delayIsAnsweredWithRetryAfterInsteadOfWaiting() {
+        String key = LoginThrottleService.usernameKey("app", "alice");
+        for (int i = 0; i < properties.getUsernameDelayThreshold(); i++) {
+            service.recordFailure(key, "192.0.2." + i);
+        }
+
+        assertThatThrownBy(() -> service.checkAllowed(key, "198.51.100.1"))
+                .isInstanceOfSatisfying(AuthException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+                });
+    }
+}
@@ -0,0 +1,133 @@
+package com.devang.authentication.service;
+
+import com.devang.authentication.config.HashingProperties;
+import com.devang.authentication.exception.AuthException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Whether unknown usernames cost as much as wrong passwords is a timing question, measured end to
+ * end by LoginTimingBenchmark in the loadtest module; here only the deterministic parts are checked.
+ */
+class PasswordHashingServiceTest {
+
+    private static final int POOL_SIZE = 1;
+    private static final int QUEUE_CAPACITY = 2;
+
+    private final List<PasswordHashingService> services = new ArrayList<>();
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        services.forEach(PasswordHashingService::shutdown);
+        callers.shutdownNow();
+        callers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void matchesDummyRejectsEveryPassword() {
+        PasswordHashingService service = service(new BCryptPasswordEncoder(), new HashingProperties(), new SimpleMeterRegistry());
+
+        assertThat(service.matchesDummy("correct-password")).isFalse();
+        assertThat(service.matchesDummy("")).isFalse();
+    }
+
+    @Test
+    void saturatedPoolRejectsWithServiceUnavailableAndQueuesNoMore() throws Exception {
+        HashingProperties properties = new HashingProperties();
+        properties.setPoolSize(POOL_SIZE);
+        properties.setQueueCapacity(QUEUE_CAPACITY);
+        properties.setTimeout(TimeUnit.MINUTES.toMillis(1));
+        BlockingEncoder encoder = new BlockingEncoder();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashingService service = service(encoder, properties, registry);
+
+        // One hash occupies the only thread, the next ones fill the queue
+        List<Future<Boolean>> accepted = new ArrayList<>();
+        accepted.add(callers.submit(() -> service.matches("password", "hash")));
+        assertThat(encoder.started.await(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < QUEUE_CAPACITY; i++) {
+            accepted.add(callers.submit(() -> service.matchesDummy("password")));
+        }
+        awaitQueued(registry, QUEUE_CAPACITY);
+
+        assertThatThrownBy(() -> service.matches("password", "hash"))
+                .isInstanceOfSatisfying(AuthException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(queued(registry)).isEqualTo(QUEUE_CAPACITY);
+
+        encoder.release.countDown();
+        for (Future<Boolean> call : accepted) {
+            call.get(10, TimeUnit.SECONDS);
+        }
+        // The rejected call never reached the encoder
+        assertThat(encoder.calls.get()).isEqualTo(POOL_SIZE + QUEUE_CAPACITY);
+    }
+
+    private PasswordHashingService service(PasswordEncoder encoder, HashingProperties properties, MeterRegistry registry) {
+        PasswordHashingService service = new PasswordHashingService(encoder, properties, registry);
+        services.add(service);
+        return service;
+    }
+
+    // Callers submit from their own threads; waits (bounded) until all of them are in the queue
+    private static void awaitQueued(MeterRegistry registry, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queued(registry) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(queued(registry)).isEqualTo(expected);
+    }
+
+    private static double queued(MeterRegistry registry) {
+        return registry.get("executor.queued").tag("name", "password.hashing").gauge().value();
+    }
+
+    // Verifications block until released, so the test decides when the pool frees up
+    private static final class BlockingEncoder implements PasswordEncoder {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "hash";
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
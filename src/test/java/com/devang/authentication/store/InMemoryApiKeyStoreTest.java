@@ -0,0 +1,90 @@
+package com.devang.authentication.store;
+
+import com.devang.authentication.entity.ClientApp;
+import com.devang.authentication.entity.Organization;
+import com.devang.authentication.repository.ClientAppRepository;
+import com.devang.authentication.repository.OrganizationRepository;
+import com.devang.authentication.service.ClientAppSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryApiKeyStoreTest {
+
+    private static final String KEY = "app_key";
+
+    private ClientAppRepository clientAppRepository;
+    private InMemoryApiKeyStore store;
+    private ClientApp clientApp;
+
+    @BeforeEach
+    void setUp() {
+        clientAppRepository = mock(ClientAppRepository.class);
+        store = new InMemoryApiKeyStore();
+        ReflectionTestUtils.setField(store, "clientAppRepository", clientAppRepository);
+        ReflectionTestUtils.setField(store, "organizationRepository", mock(OrganizationRepository.class));
+
+        Organization organization = new Organization();
+        organization.setId(UUID.randomUUID());
+        organization.setName("acme");
+        clientApp = new ClientApp();
+        clientApp.setId(UUID.randomUUID());
+        clientApp.setClientAppApiKey(KEY);
+        clientApp.setOrganization(organization);
+    }
+
+    @Test
+    void repeatedLookupsAreAnsweredFromTheIndex() {
+        when(clientAppRepository.findWithOrganizationByClientAppApiKey(KEY)).thenReturn(Optional.of(clientApp));
+
+        Optional<ClientAppSnapshot> first = store.findClientApp(KEY);
+        Optional<ClientAppSnapshot> second = store.findClientApp(KEY);
+
+        assertThat(second).isEqualTo(first).map(ClientAppSnapshot::id).contains(clientApp.getId());
+        verify(clientAppRepository, times(1)).findWithOrganizationByClientAppApiKey(KEY);
+    }
+
+    @Test
+    void evictedKeysAreLookedUpAgain() {
+        when(clientAppRepository.findWithOrganizationByClientAppApiKey(KEY)).thenReturn(Optional.of(clientApp));
+        store.findClientApp(KEY);
+
+        store.evictOrganization(clientApp.getOrganization().getId());
+        store.findClientApp(KEY);
+
+        verify(clientAppRepository, times(2)).findWithOrganizationByClientAppApiKey(KEY);
+    }
+
+    @Test
+    void lookupRacingAnEvictionIsNotIndexed() {
+        // The key is disabled while its lookup is still reading the old row
+        when(clientAppRepository.findWithOrganizationByClientAppApiKey(KEY)).thenAnswer(invocation -> {
+            store.evictClientApp(clientApp.getId());
+            return Optional.of(clientApp);
+        });
+
+        store.findClientApp(KEY);
+        store.findClientApp(KEY);
+
+        verify(clientAppRepository, times(2)).findWithOrganizationByClientAppApiKey(KEY);
+    }
+
+    @Test
+    void unknownKeysAreNotIndexed() {
+        when(clientAppRepository.findWithOrganizationByClientAppApiKey(KEY)).thenReturn(Optional.empty());
+
+        assertThat(store.findClientApp(KEY)).isEmpty();
+        assertThat(store.findClientApp(KEY)).isEmpty();
+
+        verify(clientAppRepository, times(2)).findWithOrganizationByClientAppApiKey(KEY);
+    }
+}